@@ -118,6 +118,39 @@ public interface ApplicationContext
      */
     String[] getTextFileExtensions() throws DocmaException;
 
+    /**
+     * Registers a listener that is notified whenever a node lock is
+     * released.
+     * Expired locks are released proactively by the application, that means
+     * the listener is notified as soon as the lock timeout has elapsed
+     * (see {@link Lock#getTimeout()}), not only when the lock is accessed
+     * the next time.
+     * If the given listener is already registered, then this method
+     * does nothing.
+     *
+     * <p>Note that content application handlers that implement the
+     * {@link LockListener} interface are registered by the application
+     * automatically.
+     * Content editor handlers that need to be notified about released
+     * (e.g. expired) edit locks have to implement the interface themselves;
+     * <code>DefaultContentAppHandler</code> does not implement it.</p>
+     *
+     * @param listener  the listener to be registered
+     * @see #removeLockListener(LockListener)
+     */
+    void addLockListener(LockListener listener);
+
+    /**
+     * Unregisters a listener that has been registered by
+     * {@link #addLockListener(LockListener)}.
+     * If the given listener is not registered, then this method does nothing.
+     * Plug-ins should unregister their listeners when the plug-in is
+     * unloaded.
+     *
+     * @param listener  the listener to be unregistered
+     */
+    void removeLockListener(LockListener listener);
+
     String[] getAutoFormatClassNames() throws DocmaException;
     void registerAutoFormatClasses(String... clsNames) throws DocmaException;
     void unregisterAutoFormatClasses(String... clsNames) throws DocmaException;
@@ -0,0 +1,59 @@
+/*
+ * CommitDurability.java
+ *
+ *  Copyright (C) 2018  Manfred Paula, http://www.docmenta.org
+ *   
+ *  This file is part of Docmenta. Docmenta is free software: you can 
+ *  redistribute it and/or modify it under the terms of the GNU Lesser 
+ *  General Public License as published by the Free Software Foundation, 
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Docmenta.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.docma.plugin;
+
+/**
+ * Defines when the changes of a committed transaction are flushed to 
+ * persistent storage.
+ * 
+ * <p>Committed transactions are written to the store's write-ahead journal.
+ * Commits of concurrent connections are collected and flushed together 
+ * (group commit), so that the number of flush operations does not grow 
+ * with the number of concurrent commits.</p>
+ * 
+ * <table>
+ * <tr>
+ *   <th>Constant</th>
+ *   <th>Description</th>
+ * </tr>
+ * <tr>
+ *   <td><code>SYNC</code></td>
+ *   <td>{@link StoreConnection#commitTransaction()} returns after the 
+ *       journal containing the changes has been flushed. This is the 
+ *       default.</td>
+ * </tr>
+ * <tr>
+ *   <td><code>PERIODIC</code></td>
+ *   <td>{@link StoreConnection#commitTransaction()} returns immediately. 
+ *       The journal is flushed periodically, in an interval that is defined
+ *       by the application configuration. A system crash can lose the 
+ *       changes committed within the last interval.</td>
+ * </tr>
+ * <tr>
+ *   <td><code>ASYNC</code></td>
+ *   <td>{@link StoreConnection#commitTransaction()} returns immediately. 
+ *       The journal is flushed in the background as soon as possible.</td>
+ * </tr>
+ * </table>
+ *
+ * <p>Note that regardless of the durability, committed changes are 
+ * immediately visible to all connections.</p>
+ * 
+ * @author MP
+ * @see StoreConnection#setCommitDurability(CommitDurability)
+ */
+public enum CommitDurability 
+{
+    SYNC, PERIODIC, ASYNC;
+}
@@ -151,7 +151,28 @@ public interface Content extends Node
      *                         for example due to a connection error
      */
     long getContentLength() throws DocmaException;
-    
+
+    /**
+     * Returns a hash value of the content. The hash value is a hexadecimal
+     * string that is computed from the content bytes. Two contents that
+     * have the same hash value and the same length can be assumed to be
+     * equal. The hash value is maintained by the store, i.e. calling this
+     * method does not require reading the content.
+     *
+     * <p>If the session is in translation-mode, then this method returns the
+     * hash value of the translated content.
+     * If the session is in translation-mode, but no translated content
+     * exists, then this method returns the hash value of the original
+     * content.</p>
+     *
+     * @return the hash value of the content, or an empty string if no
+     *         content is assigned
+     * @throws DocmaException  if the hash value cannot be retrieved,
+     *                         for example due to a connection error
+     * @see ImportSettings#setIncremental(boolean)
+     */
+    String getContentHash() throws DocmaException;
+
     /**
      * Returns the MIME type of the node.
      *
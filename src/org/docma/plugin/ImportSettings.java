@@ -0,0 +1,172 @@
+/*
+ * ImportSettings.java
+ *
+ *  Copyright (C) 2018  Manfred Paula, http://www.docmenta.org
+ *   
+ *  This file is part of Docmenta. Docmenta is free software: you can 
+ *  redistribute it and/or modify it under the terms of the GNU Lesser 
+ *  General Public License as published by the Free Software Foundation, 
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Docmenta.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.docma.plugin;
+
+/**
+ * Settings for importing nodes. 
+ * An instance of this class can be passed to the
+ * {@link StoreConnection#importNodesWithSettings(Node, java.io.File, ImportSettings)} and
+ * {@link StoreConnection#importNodesWithSettings(Node, java.io.InputStream, ImportSettings)} 
+ * methods.
+ * 
+ * <p>The import is executed as a pipeline of the stages 
+ * <em>read</em>, <em>parse/validate</em> and <em>store</em>. The parse/validate
+ * stage is executed by up to {@link #getThreadCount()} worker threads.
+ * The number of nodes that have been read but not stored yet is limited by
+ * {@link #getMaxPendingNodes()}. If this limit is reached, then reading 
+ * is suspended until the store stage has caught up. Therefore, the memory 
+ * needed by the import does not depend on the size of the import.</p>
+ *
+ * @author MP
+ */
+public class ImportSettings 
+{
+    private Language[] translations = null;
+    private ProgressListener listener = null;
+    private int threadCount = 0;
+    private int maxPendingNodes = 0;
+    private boolean incremental = false;
+
+    /**
+     * Creates import settings with default values. The default settings
+     * import all translations, use the application's default number of 
+     * worker threads and the application's default pending nodes limit.
+     */
+    public ImportSettings() 
+    {
+    }
+
+    /**
+     * Returns the translation languages to be imported.
+     * 
+     * @return  the translation languages, or <code>null</code> 
+     *          for all translations
+     */
+    public Language[] getTranslations() 
+    {
+        return translations;
+    }
+
+    /**
+     * Sets the translation languages to be imported.
+     * 
+     * @param translations  the translation languages to be imported; 
+     *                      <code>null</code> means all translations
+     */
+    public void setTranslations(Language[] translations) 
+    {
+        this.translations = translations;
+    }
+
+    /**
+     * Returns the listener that is notified about the import progress.
+     * 
+     * @return  the progress listener, or <code>null</code>
+     */
+    public ProgressListener getProgressListener() 
+    {
+        return listener;
+    }
+
+    /**
+     * Sets the listener that is notified about the import progress.
+     * 
+     * @param listener  the progress listener, or <code>null</code>
+     */
+    public void setProgressListener(ProgressListener listener) 
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the maximum number of worker threads.
+     * 
+     * @return  the maximum number of worker threads, or 0 if the 
+     *          application's default shall be used
+     */
+    public int getThreadCount() 
+    {
+        return threadCount;
+    }
+
+    /**
+     * Sets the maximum number of worker threads.
+     * If <code>threadCount</code> is 1, then all stages are executed by
+     * the calling thread. If <code>threadCount</code> is 0 or negative, 
+     * then the application's default number of worker threads is used.
+     * 
+     * @param threadCount  the maximum number of worker threads
+     */
+    public void setThreadCount(int threadCount) 
+    {
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Returns the maximum number of nodes that have been read, but
+     * not stored yet.
+     * 
+     * @return  the pending nodes limit, or 0 if the 
+     *          application's default shall be used
+     */
+    public int getMaxPendingNodes() 
+    {
+        return maxPendingNodes;
+    }
+
+    /**
+     * Sets the maximum number of nodes that have been read, but
+     * not stored yet. If <code>maxPendingNodes</code> is 0 or negative,
+     * then the application's default limit is used.
+     * 
+     * @param maxPendingNodes  the pending nodes limit
+     */
+    public void setMaxPendingNodes(int maxPendingNodes) 
+    {
+        this.maxPendingNodes = maxPendingNodes;
+    }
+
+    /**
+     * Returns whether unchanged nodes are skipped.
+     * 
+     * @return  <code>true</code> if the import is incremental;
+     *          <code>false</code> otherwise
+     * @see #setIncremental(boolean)
+     */
+    public boolean isIncremental() 
+    {
+        return incremental;
+    }
+
+    /**
+     * Sets whether unchanged nodes shall be skipped. The default is 
+     * <code>false</code>, that means all imported nodes are written.
+     * 
+     * <p>In incremental mode, each imported node is matched with the 
+     * existing node that has the same node-id within the target node.
+     * The content hash and the attribute values (including translations) 
+     * of both nodes are compared. If they are equal, then the existing node 
+     * is left untouched. In particular, no new content revision is created 
+     * and the last modification date is not changed. Only nodes that 
+     * differ, and nodes that do not exist yet, are written.</p>
+     * 
+     * @param incremental  <code>true</code> if unchanged nodes shall be
+     *                     skipped; <code>false</code> otherwise
+     */
+    public void setIncremental(boolean incremental) 
+    {
+        this.incremental = incremental;
+    }
+
+}
@@ -19,7 +19,15 @@ package org.docma.plugin;
  */
 public interface Lock 
 {
-    // String getLockedObjectId();
+    /**
+     * Returns the identifier of the locked object. For node locks this is 
+     * the node-id of the locked node.
+     * 
+     * @return  the identifier of the locked object
+     * @see StoreConnection#getLocks()
+     */
+    String getLockedObjectId();
+
     // String getName();
     String getUserId();
     long getCreationTime();
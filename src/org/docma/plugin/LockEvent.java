@@ -0,0 +1,60 @@
+/*
+ * LockEvent.java
+ *
+ *  Copyright (C) 2018  Manfred Paula, http://www.docmenta.org
+ *   
+ *  This file is part of Docmenta. Docmenta is free software: you can 
+ *  redistribute it and/or modify it under the terms of the GNU Lesser 
+ *  General Public License as published by the Free Software Foundation, 
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Docmenta.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.docma.plugin;
+
+/**
+ * Notification about a released lock.
+ * An instance of this interface is passed to all registered
+ * {@link LockListener} instances, whenever a lock is released, either
+ * because the lock has been removed explicitly or because the lock
+ * has expired.
+ *
+ * @author MP
+ * @see ApplicationContext#addLockListener(LockListener)
+ */
+public interface LockEvent
+{
+    /**
+     * Returns the identifier of the store that contains the locked node.
+     *
+     * @return  the store identifier
+     */
+    String getStoreId();
+
+    /**
+     * Returns the version of the store that contains the locked node.
+     *
+     * @return  the version identifier
+     */
+    VersionId getVersionId();
+
+    /**
+     * Returns the information about the released lock.
+     *
+     * @return  the released lock
+     */
+    Lock getLock();
+
+    /**
+     * Returns <code>true</code>, if the lock has been released by the
+     * application, because the lock timeout has elapsed.
+     * Returns <code>false</code>, if the lock has been removed explicitly,
+     * for example by {@link Node#removeLock()}.
+     *
+     * @return  <code>true</code> if the lock has expired;
+     *          <code>false</code> otherwise
+     * @see Lock#getTimeout()
+     */
+    boolean isExpired();
+}
@@ -0,0 +1,29 @@
+/*
+ * LockListener.java
+ *
+ *  Copyright (C) 2018  Manfred Paula, http://www.docmenta.org
+ *   
+ *  This file is part of Docmenta. Docmenta is free software: you can 
+ *  redistribute it and/or modify it under the terms of the GNU Lesser 
+ *  General Public License as published by the Free Software Foundation, 
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Docmenta.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.docma.plugin;
+
+/**
+ * Listener interface for receiving lock release notifications.
+ *
+ * <p>Note that listeners are invoked by an application thread, which is
+ * <em>not</em> bound to a user session. Therefore, implementations should
+ * return quickly and must not block.</p>
+ *
+ * @author MP
+ * @see ApplicationContext#addLockListener(LockListener)
+ */
+public interface LockListener
+{
+    void onEvent(LockEvent evt);
+}
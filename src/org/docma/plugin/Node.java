@@ -775,6 +775,73 @@ public interface Node
      */
     Lock removeLock() throws DocmaException;
 
+    //************************************************************
+    //**************    Concurrency methods     ******************
+    //************************************************************
+
+    /**
+     * Returns the modification stamp of this node.
+     * The modification stamp is a number that is increased by the store each
+     * time the node is updated, for example by
+     * {@link #setAttribute(String, String)} or one of the
+     * <code>setContent...</code> methods.
+     * Two reads of the modification stamp return the same value, if and only
+     * if the node has not been updated in between.
+     *
+     * <p>The modification stamp can be used for optimistic concurrency
+     * control: first read the stamp, then read the node data, compute the
+     * update, and write the update by calling
+     * {@link #setAttributesIfUnmodified(String[], String[], long)} with the
+     * previously read stamp. The stamp has to be read <em>before</em> the
+     * data that it guards. If the stamp is read after the data, then an 
+     * update that happens in between is not detected, and the conditional
+     * update succeeds on stale data.
+     * In contrast to {@link #setLock()}, this does not require creating, 
+     * refreshing and removing a lock for each node.</p>
+     *
+     * <p>Note that the stamp is not related to the translation-mode, i.e.
+     * updating a translated value increases the stamp as well.</p>
+     *
+     * @return  the modification stamp
+     * @throws DocmaException  if the stamp cannot be retrieved, for example
+     *                         due to a connection error
+     * @see #setAttributesIfUnmodified(String[], String[], long)
+     */
+    long getModificationStamp() throws DocmaException;
+
+    /**
+     * Sets the values of the given attributes, if the node has not been
+     * modified since the given modification stamp has been read.
+     * If the current modification stamp of the node is equal to
+     * <code>stamp</code>, then all attribute values are set in one atomic
+     * operation and <code>true</code> is returned.
+     * Otherwise no attribute is changed and <code>false</code> is returned.
+     * In the latter case the caller should re-read the modification stamp 
+     * and then the node data, and retry the update.
+     *
+     * <p>The value at position <code>i</code> of the <code>values</code>
+     * argument is assigned to the attribute with the name at position
+     * <code>i</code> of the <code>names</code> argument. Each single
+     * assignment has the same semantics as
+     * {@link #setAttribute(String, String)}, i.e. <code>null</code> values
+     * remove the attribute and the translation-mode is taken into account.</p>
+     *
+     * <p>Note: Same as for the <code>setAttribute</code> method, an
+     * existing lock of another user does <em>not</em> prevent the update.</p>
+     *
+     * @param names  the attribute names
+     * @param values  the attribute values; same length as <code>names</code>
+     * @param stamp  the modification stamp as returned by
+     *               {@link #getModificationStamp()}
+     * @return  <code>true</code> if the attributes have been set;
+     *          <code>false</code> if the node has been modified concurrently
+     * @throws DocmaException  If setting the attribute values is not possible
+     *                         (for example, due to access rights, a reserved
+     *                         attribute name or a connection error)
+     * @see #getModificationStamp()
+     */
+    boolean setAttributesIfUnmodified(String[] names, String[] values, long stamp) throws DocmaException;
+
     //************************************************************
     //**************    Other methods           ******************  
     //************************************************************
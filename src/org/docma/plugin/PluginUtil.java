@@ -17,6 +17,8 @@ package org.docma.plugin;
 import java.util.*;
 import java.io.*;
 import java.text.MessageFormat;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 import org.docma.plugin.internals.LabelUtil;
 
 /**
@@ -26,8 +28,20 @@ import org.docma.plugin.internals.LabelUtil;
  */
 public class PluginUtil
 {
-    private static final Map<String, Properties> resourceMap = new Hashtable();  // use Hashtable because it is synchronized!
-    private static final Map<String, MessageFormat> msgFormatMap = new Hashtable();
+    // Number of cached languages per class, above which missing resources 
+    // are no longer cached
+    private static final int MAX_CACHED_MISSES_PER_CLASS = 32;
+    
+    // Cache entry of a resource that does not exist (shared by all classes)
+    private static final ResourceEntry MISSING_RESOURCE = new ResourceEntry(null);
+    
+    // Syntax of a language code (e.g. "de", "fil" or "pt_br"); other codes 
+    // are mapped to "en"
+    private static final Pattern LANGUAGE_CODE = Pattern.compile("[a-z]{2,3}([_-][a-z0-9]{1,8})*");
+    
+    // Maps class name to the resources of the class per language code
+    private static final ConcurrentHashMap<String, ConcurrentHashMap<String, ResourceEntry>> resourceMap = 
+        new ConcurrentHashMap<String, ConcurrentHashMap<String, ResourceEntry>>();
 
     /**
      * Private constructor to avoid the creation of instances. 
@@ -123,42 +137,92 @@ public class PluginUtil
     public static String getResourceString(Class cls, String languageCode, String name, Object[] args)
     {
         languageCode = (languageCode == null) ? "en" : languageCode.toLowerCase();
+        if (! LANGUAGE_CODE.matcher(languageCode).matches()) {
+            languageCode = "en";
+        }
         
-        String res_name = cls.getName().replace('.', '/') + "_" + languageCode + ".xml";
-        Properties props = resourceMap.get(res_name);
-        if (props == null) {
+        ResourceEntry entry = getResourceEntry(cls, languageCode);
+        if (entry.props == null) {
+            return languageCode.equals("en") ? "" : getResourceString(cls, "en", name, args);
+        }
+        
+        String val = entry.props.getProperty(name, "");
+        if ((args != null) && (args.length > 0)) {
+            MessageFormat mf = entry.formats.get(name);
+            if (mf == null) {
+                mf = new MessageFormat(val, new Locale(languageCode));
+                MessageFormat existing = entry.formats.putIfAbsent(name, mf);
+                if (existing != null) {
+                    mf = existing;
+                }
+            }
+            synchronized (mf) {  // MessageFormat is not thread-safe
+                val = mf.format(args);
+            }
+        }
+        return val;
+    }
+
+    /**
+     * Returns the cached resources for the given class and language.
+     * If no resource exists, the shared MISSING_RESOURCE entry is returned. 
+     * Existing resources are always cached. Missing resources are cached 
+     * only as long as less than MAX_CACHED_MISSES_PER_CLASS languages are 
+     * cached for the class, to avoid repeated lookups through the class 
+     * loader without letting arbitrary language codes fill the cache.
+     */
+    private static ResourceEntry getResourceEntry(Class<?> cls, String languageCode)
+    {
+        String clsName = cls.getName();
+        ConcurrentHashMap<String, ResourceEntry> langMap = resourceMap.get(clsName);
+        if (langMap == null) {
+            langMap = new ConcurrentHashMap<String, ResourceEntry>();
+            ConcurrentHashMap<String, ResourceEntry> existing = resourceMap.putIfAbsent(clsName, langMap);
+            if (existing != null) {
+                langMap = existing;
+            }
+        }
+        ResourceEntry entry = langMap.get(languageCode);
+        if (entry == null) {
+            String res_name = clsName.replace('.', '/') + "_" + languageCode + ".xml";
+            Properties props = null;
             try {
                 // System.out.print("Try loading resource: " + res_name);
                 InputStream in = cls.getClassLoader().getResourceAsStream(res_name);
                 if (in != null) {
                     Properties p = new Properties();
                     p.loadFromXML(in);
-                    // System.out.println(" ... okay.");
                     props = p;
-                    resourceMap.put(res_name, props);
-                } else {
-                    // System.out.println(" ... not found!");
                 }
             } catch (Exception ex) {
                 // ex.printStackTrace();
             }
-        }
-        if ((props == null) && !languageCode.equals("en")) {
-            return getResourceString(cls, "en", name, args);
-        }
-        
-        String val = (props != null) ? props.getProperty(name, "") : "";
-        if ((args != null) && (args.length > 0)) {
-            String key = languageCode + "::" + val;
-            MessageFormat mf = msgFormatMap.get(key);
-            if (mf == null) {
-                mf = new MessageFormat(val, new Locale(languageCode));
-                msgFormatMap.put(key, mf);
+            if (props == null) {
+                if (langMap.size() >= MAX_CACHED_MISSES_PER_CLASS) {
+                    return MISSING_RESOURCE;  // do not cache
+                }
+                entry = MISSING_RESOURCE;
+            } else {
+                entry = new ResourceEntry(props);
+            }
+            ResourceEntry existing = langMap.putIfAbsent(languageCode, entry);
+            if (existing != null) {
+                entry = existing;
             }
-            val = mf.format(args);
         }
-        return val;
+        return entry;
     }
 
+    private static class ResourceEntry
+    {
+        final Properties props;  // null if resource does not exist
+        final ConcurrentHashMap<String, MessageFormat> formats = 
+            new ConcurrentHashMap<String, MessageFormat>();  // property name -> format
+        
+        ResourceEntry(Properties props)
+        {
+            this.props = props;
+        }
+    }
 
 }
@@ -0,0 +1,51 @@
+/*
+ * ProgressListener.java
+ *
+ *  Copyright (C) 2018  Manfred Paula, http://www.docmenta.org
+ *   
+ *  This file is part of Docmenta. Docmenta is free software: you can 
+ *  redistribute it and/or modify it under the terms of the GNU Lesser 
+ *  General Public License as published by the Free Software Foundation, 
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Docmenta.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.docma.plugin;
+
+/**
+ * Listener interface for long running operations, for example
+ * export and import of nodes.
+ * The operation calls {@link #onProgress(long, long)} repeatedly while 
+ * it is running, and checks {@link #isCanceled()} to allow the caller to 
+ * stop the operation.
+ * 
+ * <p>Note that the listener may be invoked by a thread other than the
+ * thread that started the operation.</p>
+ *
+ * @author MP
+ * @see StoreConnection#exportNodes(Node[], java.io.OutputStream, ProgressListener)
+ * @see StoreConnection#importNodes(Node, java.io.InputStream, Language[], ProgressListener)
+ */
+public interface ProgressListener 
+{
+    /**
+     * Reports the progress of the operation.
+     * The unit of the values depends on the operation. For export and 
+     * import of nodes, the values are byte counts.
+     * 
+     * @param processed  the amount of work that has been done so far
+     * @param total  the total amount of work, or -1 if unknown
+     */
+    void onProgress(long processed, long total);
+    
+    /**
+     * Returns whether the operation shall be canceled.
+     * If this method returns <code>true</code>, then the operation stops 
+     * as soon as possible and throws a {@link DocmaException}.
+     * 
+     * @return  <code>true</code> if the operation shall be canceled;
+     *          <code>false</code> otherwise
+     */
+    boolean isCanceled();
+}
@@ -14,7 +14,9 @@
 package org.docma.plugin;
 
 import java.io.File;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Date;
 import java.util.Map;
 import java.util.Properties;
 
@@ -207,12 +209,17 @@ public interface StoreConnection
      * @throws DocmaException  if starting the transaction fails,
      *                         for example due to a connection error, or 
      *                         because a transaction is already running
+     * @see #startNestedTransaction()
      */
     void startTransaction() throws DocmaException;
     
     /**
      * Commits a previously started transaction.
      * 
+     * Whether this method returns before or after the changes have been
+     * flushed to persistent storage depends on the durability setting
+     * of this connection (see {@link #setCommitDurability(CommitDurability)}).
+     *
      * @throws DocmaException  if commiting the transaction fails,
      *                         for example due to a connection error
      */
@@ -238,6 +245,170 @@ public interface StoreConnection
      */
     boolean runningTransaction();
 
+    /**
+     * Starts a nested transaction for this connection.
+     * If no transaction is running, then this method has the same effect
+     * as {@link #startTransaction()}.
+     * Otherwise a new transaction is started within the running transaction.
+     *
+     * <p>Calling {@link #commitTransaction()} or
+     * {@link #rollbackTransaction()} always ends the innermost running
+     * transaction. Committing a nested transaction merges its changes into
+     * the enclosing transaction, that means the changes are not persisted
+     * before the outermost transaction is committed. Rolling back a nested
+     * transaction just discards the changes done since the nested
+     * transaction has been started. The enclosing transaction is still
+     * running and can be committed or rolled back.</p>
+     *
+     * <p>For example, a long running batch job can process each chunk of
+     * work in a nested transaction, and retry a failed chunk without
+     * having to redo the previous chunks.</p>
+     *
+     * @throws DocmaException  if starting the transaction fails,
+     *                         for example due to a connection error
+     * @see #getTransactionDepth()
+     */
+    void startNestedTransaction() throws DocmaException;
+
+    /**
+     * Returns the number of currently running (nested) transactions.
+     * If no transaction is running, then 0 is returned. If a transaction is
+     * running, but no nested transaction has been started, then 1 is
+     * returned.
+     *
+     * @return  the nesting depth of the running transactions
+     * @see #startNestedTransaction()
+     */
+    int getTransactionDepth();
+
+    /**
+     * Marks the current state of the running transaction with the given
+     * savepoint name.
+     * Changes done after this call can be discarded by calling
+     * {@link #rollbackToSavepoint(String)} with the same name, without
+     * rolling back the complete transaction.
+     * If a savepoint with the given name already exists within the running
+     * transaction, then the savepoint is moved to the current state.
+     *
+     * @param name  the name of the savepoint
+     * @throws DocmaException  if no transaction is running, or if setting
+     *                         the savepoint fails, for example due to a
+     *                         connection error
+     * @see #rollbackToSavepoint(String)
+     * @see #releaseSavepoint(String)
+     */
+    void setSavepoint(String name) throws DocmaException;
+
+    /**
+     * Discards all changes of the running transaction that have been done
+     * after the savepoint with the given name has been set.
+     * The transaction is still running after this call. The savepoint
+     * itself remains valid, whereas all savepoints that have been set
+     * after the given savepoint are released.
+     *
+     * @param name  the name of the savepoint
+     * @throws DocmaException  if no such savepoint exists within the running
+     *                         transaction, or if the rollback fails, for
+     *                         example due to a connection error
+     * @see #setSavepoint(String)
+     */
+    void rollbackToSavepoint(String name) throws DocmaException;
+
+    /**
+     * Releases the savepoint with the given name. The changes done in the
+     * running transaction are not affected.
+     * Note that all savepoints are released automatically when the
+     * transaction, in which the savepoints have been set, is committed or
+     * rolled back.
+     *
+     * @param name  the name of the savepoint
+     * @throws DocmaException  if releasing the savepoint fails,
+     *                         for example due to a connection error
+     * @see #setSavepoint(String)
+     */
+    void releaseSavepoint(String name) throws DocmaException;
+
+    /**
+     * Returns the durability setting that is applied to transactions
+     * committed by this connection.
+     *
+     * @return  the commit durability
+     * @see #setCommitDurability(CommitDurability)
+     */
+    CommitDurability getCommitDurability();
+
+    /**
+     * Sets the durability setting that is applied to transactions
+     * committed by this connection. The default is
+     * {@link CommitDurability#SYNC}.
+     * For example, a batch job that can be repeated in case of a system
+     * crash, may use {@link CommitDurability#ASYNC} to avoid waiting for
+     * each flush operation.
+     *
+     * @param durability  the commit durability
+     * @see CommitDurability
+     */
+    void setCommitDurability(CommitDurability durability);
+
+    //
+    // ***************  Lock methods  *****************
+    //
+
+    /**
+     * Sets a lock for each of the given nodes in one atomic operation.
+     * Either all nodes are locked and <code>true</code> is returned, or
+     * no lock is created at all and <code>false</code> is returned.
+     * The latter is the case, if at least one of the nodes is already
+     * locked.
+     *
+     * <p>Each created lock has the same semantics as a lock created by
+     * {@link Node#setLock()}. For example, this method can be used to lock
+     * all nodes of a chapter before editing, without the risk that only
+     * a part of the chapter gets locked.</p>
+     *
+     * @param nodes  the nodes to be locked
+     * @return  <code>true</code> if all locks have been created;
+     *          <code>false</code> if at least one node is already locked
+     * @throws DocmaException  if the creation of the locks is not possible,
+     *                         (for example, due to access rights or a
+     *                         connection error)
+     * @see Node#setLock()
+     * @see #removeLocks(Node[])
+     */
+    boolean setLocks(Node[] nodes) throws DocmaException;
+
+    /**
+     * Removes the existing locks of the given nodes.
+     * Nodes that are not locked are ignored. The returned array contains
+     * the information about the removed locks. If none of the nodes is
+     * locked, then an empty array is returned.
+     *
+     * @param nodes  the nodes to be unlocked
+     * @return  the information about the removed locks
+     * @throws DocmaException  if removal of the locks is not possible,
+     *                         (for example, due to access rights or a
+     *                         connection error)
+     * @see Node#removeLock()
+     * @see #setLocks(Node[])
+     */
+    Lock[] removeLocks(Node[] nodes) throws DocmaException;
+
+    /**
+     * Returns all locks that currently exist in this store.
+     * The node-id of a locked node can be retrieved by
+     * {@link Lock#getLockedObjectId()}. Expired locks are not included
+     * in the result. If no lock exists, then an empty array is returned.
+     *
+     * <p>The locks are retrieved from the store's lock table. Therefore,
+     * calling this method is much more efficient than visiting all nodes
+     * and calling {@link Node#getLock()} for each node.</p>
+     *
+     * @return  all existing locks of the store
+     * @throws DocmaException  if the locks cannot be retrieved,
+     *                         for example due to a connection error
+     */
+    Lock[] getLocks() throws DocmaException;
+
     //
     // ***************  Node creation methods  ****************
     //
@@ -1003,8 +1174,34 @@ public interface StoreConnection
      * @param sourceNodes  the source nodes
      * @param targetParent  the target node, where the copy of the nodes shall be inserted as child nodes
      * @param refChild  the insert position, or <code>null</code>
+     * @see #copyNodes(Node[], Node, Node, int)
      */
     void copyNodes(Node[] sourceNodes, Node targetParent, Node refChild) throws DocmaException;
+
+    /**
+     * Copies the given source nodes to the given target position, using
+     * up to <code>threadCount</code> worker threads.
+     * This method has the same result as
+     * {@link #copyNodes(Node[], Node, Node)}, but the content data of the
+     * copied nodes (including the translated content) is copied in parallel.
+     * If the underlying file system supports it, content files may also be
+     * shared by hard links instead of being copied.
+     *
+     * <p>The copied nodes are inserted into the tree in one atomic operation,
+     * after all content data has been copied. In other words, other
+     * connections either see all copied nodes or none. If copying fails,
+     * then no node is inserted.</p>
+     *
+     * <p>If <code>threadCount</code> is 1, then the nodes are copied by
+     * the calling thread. If <code>threadCount</code> is 0 or negative,
+     * then the application's default number of worker threads is used.</p>
+     *
+     * @param sourceNodes  the source nodes
+     * @param targetParent  the target node, where the copy of the nodes shall be inserted as child nodes
+     * @param refChild  the insert position, or <code>null</code>
+     * @param threadCount  the maximum number of worker threads
+     */
+    void copyNodes(Node[] sourceNodes, Node targetParent, Node refChild, int threadCount) throws DocmaException;
     
     /**
      * Exports the given nodes into a file.
@@ -1015,9 +1212,93 @@ public interface StoreConnection
      * 
      * @param nodes  the nodes to be exported
      * @param exportFile  the output file path
+     * @see #exportNodesToFile(Node[], java.io.File, ProgressListener)
      */
     void exportNodesToFile(Node[] nodes, File exportFile) throws DocmaException;
     
+    /**
+     * Exports the given nodes into a file and reports the progress to the
+     * given listener.
+     * The format of the written file is the same as described for the
+     * {@link #exportNodes(Node[], OutputStream, ProgressListener)} method.
+     *
+     * <p>If <code>exportFile</code> already exists and contains the
+     * partial output of a previous, interrupted export of the same nodes,
+     * then the export is resumed after the last completely written entry.
+     * Otherwise an existing file is overwritten.</p>
+     *
+     * @param nodes  the nodes to be exported
+     * @param exportFile  the output file path
+     * @param listener  the progress listener, or <code>null</code>
+     */
+    void exportNodesToFile(Node[] nodes, File exportFile, ProgressListener listener) throws DocmaException;
+
+    /**
+     * Exports the nodes that have been changed since the given date
+     * (delta export).
+     * This method writes a file in the same format as
+     * {@link #exportNodesToFile(Node[], File, ProgressListener)}, but only
+     * includes the nodes within the given subtrees, whose last modification
+     * date (see {@link Node#getLastModifiedDate()}) is after
+     * <code>modifiedSince</code>. This includes modified translations.
+     * Additionally, the manifest contains a tombstone entry for each node
+     * that has been deleted from the given subtrees since
+     * <code>modifiedSince</code>.
+     *
+     * <p>If a delta export is imported, then the nodes identified by the
+     * tombstone entries are deleted in the target store (if existent).
+     * Exported nodes replace the existing nodes with the same node-id.</p>
+     *
+     * @param nodes  the root nodes of the subtrees to be exported
+     * @param exportFile  the output file path
+     * @param modifiedSince  the cut-off date
+     * @param listener  the progress listener, or <code>null</code>
+     * @see #exportNodesChangedSinceVersion(Node[], File, VersionId, ProgressListener)
+     */
+    void exportNodesChangedSince(Node[] nodes, File exportFile, Date modifiedSince, ProgressListener listener) throws DocmaException;
+
+    /**
+     * Exports the nodes that differ from the given version of this store
+     * (delta export).
+     * The <code>baseVersion</code> argument has to identify a version
+     * that this connection's version has been derived from, directly or
+     * indirectly (see {@link UserSession#getVersionDerivedFrom(String, VersionId)}).
+     * The result includes all nodes within the given subtrees that have
+     * been created or changed since <code>baseVersion</code>, and a tombstone
+     * entry for each node that has been deleted since then.
+     * See {@link #exportNodesChangedSince(Node[], File, Date, ProgressListener)}
+     * for details on delta exports.
+     *
+     * @param nodes  the root nodes of the subtrees to be exported
+     * @param exportFile  the output file path
+     * @param baseVersion  the version to compare with
+     * @param listener  the progress listener, or <code>null</code>
+     * @throws DocmaException  if <code>baseVersion</code> is not a base
+     *                         version of this store version, or if the export
+     *                         fails
+     */
+    void exportNodesChangedSinceVersion(Node[] nodes, File exportFile, VersionId baseVersion, ProgressListener listener) throws DocmaException;
+
+    /**
+     * Exports the given nodes as zip stream and reports the progress to the
+     * given listener.
+     * The first entry of the zip stream is a manifest, which lists all
+     * exported nodes and content files. The manifest is followed by one
+     * entry per content file. The stream is written incrementally, that
+     * means the content of the exported nodes is never held in memory
+     * completely. The stream can be imported incrementally as well, by
+     * passing it to the
+     * {@link #importNodes(Node, InputStream, Language[], ProgressListener)}
+     * method.
+     *
+     * <p>Note that this method does not close the output stream.</p>
+     *
+     * @param nodes  the nodes to be exported
+     * @param out  the output stream
+     * @param listener  the progress listener, or <code>null</code>
+     */
+    void exportNodes(Node[] nodes, OutputStream out, ProgressListener listener) throws DocmaException;
+
     /**
      * Imports the nodes from the given directory.
      * 
@@ -1029,6 +1310,79 @@ public interface StoreConnection
      * @see UserSession#listImportTranslations(java.io.File) 
      */
     void importNodes(Node parentNode, File importDir, Language[] translations) throws DocmaException;
+
+    /**
+     * Imports the nodes from the given directory or export file, and reports
+     * the progress to the given listener.
+     * The <code>importFile</code> argument can either be a directory as
+     * described for the {@link #importNodes(Node, File, Language[])} method,
+     * or a file that has been created by one of the
+     * <code>exportNodesToFile</code> methods. In the latter case, the file
+     * is read as stream, without extracting it.
+     *
+     * <p>The import keeps track of the nodes that have already been
+     * imported. If a previous import of the same file into the same
+     * <code>parentNode</code> has been interrupted, then the import is
+     * resumed, i.e. the already imported nodes are skipped.</p>
+     *
+     * @param parentNode  the target node, where the imported nodes shall be inserted as child nodes
+     * @param importFile  the input directory or export file
+     * @param translations  the translation languages to be imported;
+     *                      <code>null</code> means all translations
+     * @param listener  the progress listener, or <code>null</code>
+     */
+    void importNodes(Node parentNode, File importFile, Language[] translations, ProgressListener listener) throws DocmaException;
+
+    /**
+     * Imports the nodes from the given zip stream.
+     * The stream has to be in the format written by the
+     * {@link #exportNodes(Node[], OutputStream, ProgressListener)} method.
+     * The nodes are imported while the stream is read, that means the
+     * stream is not buffered completely in memory or on disk.
+     *
+     * <p>Note that this method does not close the input stream.</p>
+     *
+     * @param parentNode  the target node, where the imported nodes shall be inserted as child nodes
+     * @param in  the input stream
+     * @param translations  the translation languages to be imported;
+     *                      <code>null</code> means all translations
+     * @param listener  the progress listener, or <code>null</code>
+     */
+    void importNodes(Node parentNode, InputStream in, Language[] translations, ProgressListener listener) throws DocmaException;
+
+    /**
+     * Imports the nodes from the given directory or export file, using the
+     * given import settings.
+     * The <code>importFile</code> argument has the same meaning as in
+     * {@link #importNodes(Node, File, Language[], ProgressListener)}.
+     * The import is executed as a pipeline with bounded memory, as
+     * described in {@link ImportSettings}.
+     *
+     * <p>If no transaction is running, then all imported nodes are
+     * committed in a single transaction at the end of the import. If the
+     * import fails, then no node is imported. If a transaction is running,
+     * then the imported nodes become part of the running transaction.</p>
+     *
+     * @param parentNode  the target node, where the imported nodes shall be inserted as child nodes
+     * @param importFile  the input directory or export file
+     * @param settings  the import settings
+     * @see UserSession#listImportTranslations(java.io.File)
+     */
+    void importNodesWithSettings(Node parentNode, File importFile, ImportSettings settings) throws DocmaException;
+
+    /**
+     * Imports the nodes from the given zip stream, using the given import
+     * settings.
+     * This method has the same semantics as
+     * {@link #importNodesWithSettings(Node, File, ImportSettings)}, but reads the nodes
+     * from a stream as described in
+     * {@link #importNodes(Node, InputStream, Language[], ProgressListener)}.
+     *
+     * @param parentNode  the target node, where the imported nodes shall be inserted as child nodes
+     * @param in  the input stream
+     * @param settings  the import settings
+     */
+    void importNodesWithSettings(Node parentNode, InputStream in, ImportSettings settings) throws DocmaException;
     
     /**
      * Indicates whether <code>name</code> is a syntactically valid alias.
@@ -0,0 +1,154 @@
+/*
+ * CSSCache.java
+ *
+ *  Copyright (C) 2018  Manfred Paula, http://www.docmenta.org
+ *   
+ *  This file is part of Docmenta. Docmenta is free software: you can 
+ *  redistribute it and/or modify it under the terms of the GNU Lesser 
+ *  General Public License as published by the Free Software Foundation, 
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Docmenta.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.docma.plugin.internals;
+
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import org.docma.plugin.DocmaException;
+
+/**
+ * A cache for the style sheets generated by a store, for example the 
+ * style sheets returned by <code>StoreConnection.getCSSForPreview()</code>,
+ * <code>getCSSForEdit()</code>, <code>getCSSForExport()</code> and
+ * <code>getStylesCSS(variant)</code>.
+ * Entries are identified by the purpose, the output configuration id and 
+ * the style variant.
+ * 
+ * <p>If several threads request the same style sheet concurrently and the 
+ * style sheet is not cached yet, then the style sheet is generated only once.
+ * All other threads wait for the result.</p>
+ * 
+ * <p>The store has to call {@link #invalidateAll()} whenever a style 
+ * is saved or deleted, and {@link #invalidateOutputConfig(String)} whenever 
+ * an output configuration is saved or deleted.</p>
+ *
+ * @author MP
+ */
+public class CSSCache 
+{
+    public static final String PURPOSE_PREVIEW = "preview";
+    public static final String PURPOSE_EDIT = "edit";
+    public static final String PURPOSE_EXPORT = "export";
+    public static final String PURPOSE_STYLES = "styles";
+    
+    private static final char KEY_SEPARATOR = '\u0000';
+    
+    private final ConcurrentMap<String, FutureTask<CachedCSS>> cache = 
+        new ConcurrentHashMap<String, FutureTask<CachedCSS>>();
+
+    /**
+     * Generates the CSS of a cache entry.
+     */
+    public interface Generator 
+    {
+        String generateCSS() throws DocmaException;
+    }
+
+    public CSSCache() 
+    {
+    }
+    
+    /**
+     * Returns the cached style sheet for the given arguments. If no such 
+     * style sheet is cached, then the style sheet is created by the given 
+     * generator and added to the cache.
+     * 
+     * @param purpose  one of the <code>PURPOSE_...</code> constants
+     * @param outConfigId  the output configuration id, or <code>null</code>
+     * @param variant  the style variant, or <code>null</code>
+     * @param gen  the generator to be used if the style sheet is not cached
+     * @return  the cached style sheet
+     * @throws DocmaException  if the generator fails
+     */
+    public CachedCSS getCSS(String purpose, String outConfigId, String variant, final Generator gen) 
+    throws DocmaException
+    {
+        String key = createKey(purpose, outConfigId, variant);
+        FutureTask<CachedCSS> task = cache.get(key);
+        if (task == null) {
+            FutureTask<CachedCSS> newTask = new FutureTask<CachedCSS>(new Callable<CachedCSS>() {
+                public CachedCSS call() throws Exception 
+                {
+                    return new CachedCSS(gen.generateCSS());
+                }
+            });
+            task = cache.putIfAbsent(key, newTask);
+            if (task == null) {
+                task = newTask;
+                task.run();
+            }
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DocmaException(ex);
+        } catch (ExecutionException ex) {
+            // Do not cache failures; next request retries the generation.
+            cache.remove(key, task);
+            Throwable cause = ex.getCause();
+            if (cause instanceof DocmaException) {
+                throw (DocmaException) cause;
+            }
+            throw new DocmaException(cause);
+        }
+    }
+
+    /**
+     * Removes all cached style sheets. 
+     * Has to be called whenever a style is saved or deleted.
+     */
+    public void invalidateAll() 
+    {
+        cache.clear();
+    }
+
+    /**
+     * Removes all cached style sheets for the given output configuration.
+     * Has to be called whenever an output configuration is saved or deleted.
+     * 
+     * @param outConfigId  the output configuration id
+     */
+    public void invalidateOutputConfig(String outConfigId) 
+    {
+        String infix = KEY_SEPARATOR + ((outConfigId == null) ? "" : outConfigId) + KEY_SEPARATOR;
+        Iterator<String> it = cache.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().indexOf(infix) >= 0) {
+                it.remove();
+            }
+        }
+    }
+    
+    /* -------------- Private Methods ---------------- */
+
+    private static String createKey(String purpose, String outConfigId, String variant) 
+    {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append(purpose).append(KEY_SEPARATOR);
+        if (outConfigId != null) {
+            sb.append(outConfigId);
+        }
+        sb.append(KEY_SEPARATOR);
+        if (variant != null) {
+            sb.append(variant);
+        }
+        return sb.toString();
+    }
+
+}
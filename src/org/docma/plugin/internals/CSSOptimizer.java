@@ -0,0 +1,423 @@
+/*
+ * CSSOptimizer.java
+ *
+ *  Copyright (C) 2018  Manfred Paula, http://www.docmenta.org
+ *   
+ *  This file is part of Docmenta. Docmenta is free software: you can 
+ *  redistribute it and/or modify it under the terms of the GNU Lesser 
+ *  General Public License as published by the Free Software Foundation, 
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Docmenta.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.docma.plugin.internals;
+
+import java.util.Set;
+
+/**
+ * Utility methods to reduce the size of exported style sheets. 
+ * The export can collect the CSS class names used in the exported HTML 
+ * files by {@link #collectClassNames(CharSequence, Set)}, remove the rules 
+ * that only apply to unused classes by {@link #removeUnusedRules(String, Set)}
+ * and finally shrink the style sheet by {@link #minify(String)}.
+ *
+ * @author MP
+ */
+public class CSSOptimizer 
+{
+    private static final String SPACE_BEFORE_REMOVABLE = "{};,)>";
+    private static final String SPACE_AFTER_REMOVABLE = "{};:,(>";
+    
+    /**
+     * Private constructor to avoid the creation of instances. 
+     * This class only provides static utility methods.
+     */
+    private CSSOptimizer() 
+    {
+    }
+
+    /**
+     * Adds the names of all CSS classes that are referenced by 
+     * <code>class</code> attributes in the given HTML/XML content 
+     * to the <code>result</code> set.
+     * 
+     * @param html  the HTML content
+     * @param result  the set to which the class names are added
+     */
+    public static void collectClassNames(CharSequence html, Set<String> result) 
+    {
+        final int len = html.length();
+        int i = 0;
+        while (i < len - 5) {
+            char ch = html.charAt(i);
+            if (((ch == 'c') || (ch == 'C')) && (i > 0) && 
+                Character.isWhitespace(html.charAt(i - 1)) && 
+                regionMatchesIgnoreCase(html, i, "class")) {
+                i += 5;
+                while ((i < len) && Character.isWhitespace(html.charAt(i))) i++;
+                if ((i >= len) || (html.charAt(i) != '=')) {
+                    continue;
+                }
+                i++;
+                while ((i < len) && Character.isWhitespace(html.charAt(i))) i++;
+                if (i >= len) {
+                    break;
+                }
+                char quote = html.charAt(i);
+                boolean quoted = (quote == '"') || (quote == '\'');
+                if (quoted) {
+                    i++;
+                }
+                int start = -1;
+                while (i < len) {
+                    ch = html.charAt(i);
+                    boolean endOfValue = quoted ? (ch == quote) 
+                                                : (Character.isWhitespace(ch) || (ch == '>'));
+                    if (endOfValue || Character.isWhitespace(ch)) {
+                        if (start >= 0) {
+                            result.add(html.subSequence(start, i).toString());
+                            start = -1;
+                        }
+                        if (endOfValue) {
+                            break;
+                        }
+                    } else if (start < 0) {
+                        start = i;
+                    }
+                    i++;
+                }
+                if ((start >= 0) && (start < i)) {
+                    result.add(html.subSequence(start, i).toString());
+                }
+            } else {
+                i++;
+            }
+        }
+    }
+    
+    /**
+     * Removes all selectors that reference a CSS class which is not 
+     * contained in <code>usedClasses</code>. 
+     * If all selectors of a rule are removed, then the complete rule is 
+     * removed. Selectors that do not reference any class are kept.
+     * Rules nested in <code>@media</code> and <code>@supports</code> blocks
+     * are filtered as well. All other at-rules, for example 
+     * <code>@font-face</code> and <code>@page</code>, are kept unchanged.
+     * Comments are removed.
+     * 
+     * @param css  the style sheet
+     * @param usedClasses  the names of the used CSS classes
+     * @return  the filtered style sheet
+     */
+    public static String removeUnusedRules(String css, Set<String> usedClasses) 
+    {
+        String src = stripComments(css);
+        StringBuilder out = new StringBuilder(src.length());
+        filterBlock(src, 0, src.length(), usedClasses, out);
+        return out.toString();
+    }
+    
+    /**
+     * Removes comments and all whitespace that is not required.
+     * String literals are kept unchanged.
+     * 
+     * @param css  the style sheet
+     * @return  the minified style sheet
+     */
+    public static String minify(String css) 
+    {
+        final int len = css.length();
+        StringBuilder out = new StringBuilder(len);
+        boolean pendingSpace = false;
+        int i = 0;
+        while (i < len) {
+            char ch = css.charAt(i);
+            if ((ch == '/') && (i + 1 < len) && (css.charAt(i + 1) == '*')) {
+                int end = css.indexOf("*/", i + 2);
+                i = (end < 0) ? len : end + 2;
+                pendingSpace = true;
+                continue;
+            }
+            if (Character.isWhitespace(ch)) {
+                pendingSpace = true;
+                i++;
+                continue;
+            }
+            int outLen = out.length();
+            if (pendingSpace && (outLen > 0) && 
+                (SPACE_AFTER_REMOVABLE.indexOf(out.charAt(outLen - 1)) < 0) &&
+                (SPACE_BEFORE_REMOVABLE.indexOf(ch) < 0)) {
+                out.append(' ');
+            }
+            pendingSpace = false;
+            if ((ch == '"') || (ch == '\'')) {
+                int end = skipString(css, i, len);
+                out.append(css, i, end);
+                i = end;
+                continue;
+            }
+            if ((ch == '}') && (out.length() > 0) && (out.charAt(out.length() - 1) == ';')) {
+                out.setLength(out.length() - 1);
+            }
+            out.append(ch);
+            i++;
+        }
+        return out.toString();
+    }
+
+    /* -------------- Private Methods ---------------- */
+
+    private static void filterBlock(String css, int start, int end, Set<String> used, StringBuilder out)
+    {
+        int pos = start;
+        while (pos < end) {
+            while ((pos < end) && Character.isWhitespace(css.charAt(pos))) pos++;
+            if (pos >= end) {
+                break;
+            }
+            int open = findOutsideStrings(css, pos, end, "{;}");
+            if ((open < 0) || (css.charAt(open) == '}')) {
+                // Unexpected end of block; keep the remaining text unchanged
+                out.append(css, pos, end);
+                break;
+            }
+            if (css.charAt(open) == ';') {
+                // Statement, e.g. @import or @charset
+                out.append(css, pos, open + 1);
+                pos = open + 1;
+                continue;
+            }
+            int close = findBlockEnd(css, open, end);
+            int outLen = out.length();
+            String prelude = css.substring(pos, open).trim();
+            if (prelude.startsWith("@")) {
+                String lower = prelude.toLowerCase();
+                if (lower.startsWith("@media") || lower.startsWith("@supports")) {
+                    StringBuilder inner = new StringBuilder();
+                    filterBlock(css, open + 1, close, used, inner);
+                    if (inner.toString().trim().length() > 0) {
+                        out.append(prelude).append('{').append(inner).append('}');
+                    }
+                } else {
+                    out.append(prelude).append(css, open, Math.min(close + 1, end));
+                }
+            } else {
+                String selectors = filterSelectors(prelude, used);
+                if (selectors.length() > 0) {
+                    out.append(selectors).append(css, open, Math.min(close + 1, end));
+                }
+            }
+            if (out.length() > outLen) {
+                out.append('\n');
+            }
+            pos = close + 1;
+        }
+    }
+    
+    private static String filterSelectors(String selectorList, Set<String> used) 
+    {
+        StringBuilder res = new StringBuilder(selectorList.length());
+        int depth = 0;
+        int start = 0;
+        final int len = selectorList.length();
+        for (int i = 0; i <= len; i++) {
+            char ch = (i < len) ? selectorList.charAt(i) : ',';
+            if ((ch == '(') || (ch == '[')) {
+                depth++;
+            } else if (((ch == ')') || (ch == ']')) && (depth > 0)) {
+                depth--;
+            } else if ((ch == '"') || (ch == '\'')) {
+                i = skipString(selectorList, i, len) - 1;
+            } else if ((ch == ',') && (depth == 0)) {
+                String sel = selectorList.substring(start, Math.min(i, len)).trim();
+                if ((sel.length() > 0) && allClassesUsed(sel, used)) {
+                    if (res.length() > 0) {
+                        res.append(',');
+                    }
+                    res.append(sel);
+                }
+                start = i + 1;
+            }
+        }
+        return res.toString();
+    }
+    
+    private static boolean allClassesUsed(String selector, Set<String> used) 
+    {
+        final int len = selector.length();
+        int i = 0;
+        while (i < len) {
+            char ch = selector.charAt(i);
+            if ((ch == '"') || (ch == '\'')) {
+                i = skipString(selector, i, len);
+            } else if (ch == '[') {
+                // Skip attribute selector, e.g. a[href$=".pdf"]
+                int end = findOutsideStrings(selector, i + 1, len, "]");
+                i = (end < 0) ? len : end + 1;
+            } else if (ch == '\\') {
+                i += 2;
+            } else if ((ch == ':') && regionMatchesIgnoreCase(selector, i + 1, "not(")) {
+                // Classes within a negation do not need to be used
+                i = findClosingParenthesis(selector, i + 4, len);
+            } else if ((ch == ':') && isSelectorListPseudo(selector, i + 1)) {
+                // :is(), :where(), :matches(), :has() and :-*-any() match if 
+                // any selector of the argument list matches
+                int open = selector.indexOf('(', i);
+                int end = findClosingParenthesis(selector, open, len);
+                String args = selector.substring(open + 1, Math.max(open + 1, end - 1));
+                if ((args.trim().length() > 0) && (filterSelectors(args, used).length() == 0)) {
+                    return false;
+                }
+                i = end;
+            } else if (ch == '.') {
+                int start = ++i;
+                while ((i < len) && isNameChar(selector.charAt(i))) i++;
+                if ((i > start) && !used.contains(selector.substring(start, i))) {
+                    return false;
+                }
+            } else {
+                i++;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean isSelectorListPseudo(String selector, int offset) 
+    {
+        return regionMatchesIgnoreCase(selector, offset, "is(") ||
+               regionMatchesIgnoreCase(selector, offset, "where(") ||
+               regionMatchesIgnoreCase(selector, offset, "matches(") ||
+               regionMatchesIgnoreCase(selector, offset, "has(") ||
+               regionMatchesIgnoreCase(selector, offset, "-webkit-any(") ||
+               regionMatchesIgnoreCase(selector, offset, "-moz-any(");
+    }
+    
+    /**
+     * Returns the position after the parenthesis that closes the 
+     * parenthesis at position open, or len if there is no such parenthesis.
+     */
+    private static int findClosingParenthesis(String selector, int open, int len) 
+    {
+        int depth = 0;
+        int i = open;
+        while (i < len) {
+            char ch = selector.charAt(i);
+            if ((ch == '"') || (ch == '\'')) {
+                i = skipString(selector, i, len);
+                continue;
+            }
+            i++;
+            if (ch == '(') {
+                depth++;
+            } else if ((ch == ')') && (--depth == 0)) {
+                break;
+            }
+        }
+        return i;
+    }
+    
+    private static boolean isNameChar(char ch) 
+    {
+        return Character.isLetterOrDigit(ch) || (ch == '-') || (ch == '_') || (ch > 127);
+    }
+    
+    private static int findBlockEnd(String css, int open, int end) 
+    {
+        int depth = 0;
+        int i = open;
+        while (i < end) {
+            char ch = css.charAt(i);
+            if ((ch == '"') || (ch == '\'')) {
+                i = skipString(css, i, end);
+                continue;
+            }
+            if (ch == '{') {
+                depth++;
+            } else if (ch == '}') {
+                if (--depth == 0) {
+                    return i;
+                }
+            }
+            i++;
+        }
+        return end;
+    }
+    
+    private static int findOutsideStrings(String css, int start, int end, String chars) 
+    {
+        int i = start;
+        while (i < end) {
+            char ch = css.charAt(i);
+            if ((ch == '"') || (ch == '\'')) {
+                i = skipString(css, i, end);
+            } else if (chars.indexOf(ch) >= 0) {
+                return i;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the position after the string literal starting at 
+     * position <code>start</code>.
+     */
+    private static int skipString(String css, int start, int end) 
+    {
+        char quote = css.charAt(start);
+        int i = start + 1;
+        while (i < end) {
+            char ch = css.charAt(i);
+            if (ch == '\\') {
+                i += 2;
+            } else if (ch == quote) {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        return end;
+    }
+    
+    private static String stripComments(String css) 
+    {
+        int pos = css.indexOf("/*");
+        if (pos < 0) {
+            return css;
+        }
+        final int len = css.length();
+        StringBuilder sb = new StringBuilder(len);
+        int i = 0;
+        while (i < len) {
+            char ch = css.charAt(i);
+            if ((ch == '"') || (ch == '\'')) {
+                int end = skipString(css, i, len);
+                sb.append(css, i, end);
+                i = end;
+            } else if ((ch == '/') && (i + 1 < len) && (css.charAt(i + 1) == '*')) {
+                int end = css.indexOf("*/", i + 2);
+                i = (end < 0) ? len : end + 2;
+                sb.append(' ');
+            } else {
+                sb.append(ch);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+    
+    private static boolean regionMatchesIgnoreCase(CharSequence seq, int offset, String str) 
+    {
+        if (offset + str.length() > seq.length()) {
+            return false;
+        }
+        for (int k = 0; k < str.length(); k++) {
+            if (Character.toLowerCase(seq.charAt(offset + k)) != str.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * CacheableScriptInsertion.java
+ *
+ *  Copyright (C) 2018  Manfred Paula, http://www.docmenta.org
+ *   
+ *  This file is part of Docmenta. Docmenta is free software: you can 
+ *  redistribute it and/or modify it under the terms of the GNU Lesser 
+ *  General Public License as published by the Free Software Foundation, 
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Docmenta.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.docma.plugin.internals;
+
+import org.docma.plugin.web.WebUserSession;
+
+/**
+ * A script insertion whose output does not depend on the user session, or 
+ * depends only on a few session properties (for example, the locale).
+ * The results of such insertions are cached by {@link ScriptInsertions}, 
+ * i.e. {@link #getFileExtensions(WebUserSession)} and 
+ * {@link #getInsertion(WebUserSession, String, String)} are only invoked 
+ * once for each combination of cache key, extension and position.
+ * 
+ * <p>Plug-ins that implement the {@link ScriptInsertion} interface directly 
+ * are never cached.</p>
+ *
+ * @author MP
+ */
+public interface CacheableScriptInsertion extends ScriptInsertion
+{
+    /**
+     * Returns the key that identifies the session properties the insertion
+     * depends on. For all sessions that have the same cache key, the methods
+     * <code>getFileExtensions()</code> and <code>getInsertion()</code> have to 
+     * return the same results. For example, if the insertion depends on 
+     * the user's language only, the language code can be returned.
+     * If the insertion does not depend on the session at all, an empty 
+     * string has to be returned. 
+     * If the result cannot be cached for the given session, then 
+     * <code>null</code> has to be returned.
+     * 
+     * @param userSess  the user session
+     * @return  the cache key, an empty string, or <code>null</code>
+     */
+    String getCacheKey(WebUserSession userSess);
+}
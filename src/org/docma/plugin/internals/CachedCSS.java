@@ -0,0 +1,136 @@
+/*
+ * CachedCSS.java
+ *
+ *  Copyright (C) 2018  Manfred Paula, http://www.docmenta.org
+ *   
+ *  This file is part of Docmenta. Docmenta is free software: you can 
+ *  redistribute it and/or modify it under the terms of the GNU Lesser 
+ *  General Public License as published by the Free Software Foundation, 
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Docmenta.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.docma.plugin.internals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An immutable, generated style sheet as stored in a {@link CSSCache}.
+ * Besides the CSS text, this class provides a content hash (to be used as 
+ * HTTP ETag) and the gzip compressed UTF-8 representation of the CSS. 
+ * Both are computed only once per instance.
+ *
+ * @author MP
+ */
+public class CachedCSS 
+{
+    private static final String CHARSET = "UTF-8";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    
+    private final String css;
+    private final byte[] cssBytes;
+    private final String hash;
+    private volatile byte[] gzipped = null;
+
+    public CachedCSS(String css) 
+    {
+        this.css = (css == null) ? "" : css;
+        try {
+            this.cssBytes = this.css.getBytes(CHARSET);
+        } catch (UnsupportedEncodingException ex) {
+            throw new RuntimeException(ex);  // UTF-8 is always supported
+        }
+        this.hash = computeHash(cssBytes);
+    }
+
+    public String getCSS() 
+    {
+        return css;
+    }
+    
+    /**
+     * Returns the UTF-8 encoded CSS. The returned array is shared and must 
+     * not be modified.
+     * 
+     * @return  the UTF-8 encoded CSS
+     */
+    public byte[] getBytes() 
+    {
+        return cssBytes;
+    }
+    
+    /**
+     * Returns the hexadecimal SHA-1 hash of the UTF-8 encoded CSS.
+     * 
+     * @return  the content hash
+     */
+    public String getHash() 
+    {
+        return hash;
+    }
+
+    /**
+     * Returns the HTTP entity tag for this style sheet, i.e. the 
+     * content hash enclosed in double quotes.
+     * 
+     * @return  the entity tag
+     */
+    public String getETag() 
+    {
+        return "\"" + hash + "\"";
+    }
+
+    /**
+     * Returns the gzip compressed UTF-8 encoded CSS. The returned array is 
+     * shared and must not be modified.
+     * 
+     * @return  the compressed CSS
+     */
+    public byte[] getGzipped() 
+    {
+        byte[] res = gzipped;
+        if (res == null) {
+            // Concurrent invocations may compress twice, which is harmless.
+            res = compress(cssBytes);
+            gzipped = res;
+        }
+        return res;
+    }
+    
+    /* -------------- Private Methods ---------------- */
+
+    private static String computeHash(byte[] data) 
+    {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(data);
+            char[] res = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                res[2*i] = HEX_DIGITS[(digest[i] >> 4) & 0x0F];
+                res[2*i + 1] = HEX_DIGITS[digest[i] & 0x0F];
+            }
+            return new String(res);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);  // SHA-1 is always supported
+        }
+    }
+
+    private static byte[] compress(byte[] data) 
+    {
+        try {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream(data.length / 4 + 64);
+            GZIPOutputStream gout = new GZIPOutputStream(bout);
+            gout.write(data);
+            gout.close();
+            return bout.toByteArray();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);  // cannot occur for in-memory streams
+        }
+    }
+
+}
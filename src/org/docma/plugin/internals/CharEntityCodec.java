@@ -0,0 +1,559 @@
+/*
+ * CharEntityCodec.java
+ *
+ *  Copyright (C) 2018  Manfred Paula, http://www.docmenta.org
+ *   
+ *  This file is part of Docmenta. Docmenta is free software: you can 
+ *  redistribute it and/or modify it under the terms of the GNU Lesser 
+ *  General Public License as published by the Free Software Foundation, 
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Docmenta.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.docma.plugin.internals;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.docma.plugin.CharEntity;
+
+/**
+ * Encodes and decodes character entities according to a given set of 
+ * character entity definitions. 
+ * All lookup structures are precompiled when the codec is created: a table 
+ * indexed by code point for encoding, and a trie of the symbolic entity 
+ * names for decoding. Therefore, a new codec instance should be created 
+ * only when the character entity definitions change 
+ * (see <code>ApplicationContext.setCharEntities()</code>), and 
+ * be shared otherwise. Instances of this class are immutable and 
+ * thread-safe.
+ * 
+ * <p>Encoding and decoding is done in a single pass. The methods that 
+ * return a <code>String</code> return the argument itself, if no 
+ * replacement is required.</p>
+ *
+ * @author MP
+ */
+public class CharEntityCodec 
+{
+    private static final int MAX_TABLE_SIZE = 0x10000;
+    
+    private final String[] numericTable;     // indexed by BMP code point
+    private final String[] symbolicTable;    // indexed by BMP code point
+    private final Map<Integer, String[]> supplementary;  // numeric and symbolic
+    private final TrieNode trieRoot;
+    private final int maxNameLength;
+
+    public CharEntityCodec(CharEntity[] entities) 
+    {
+        int tableSize = 0;
+        for (CharEntity ent : entities) {
+            int cp = ent.getNumericValue();
+            if ((cp >= 0) && (cp < MAX_TABLE_SIZE) && (cp >= tableSize)) {
+                tableSize = cp + 1;
+            }
+        }
+        numericTable = new String[tableSize];
+        symbolicTable = new String[tableSize];
+        supplementary = new HashMap<Integer, String[]>();
+        trieRoot = new TrieNode();
+        int maxLen = 0;
+        for (CharEntity ent : entities) {
+            int cp = ent.getNumericValue();
+            if ((cp < 0) || (cp > Character.MAX_CODE_POINT)) {
+                continue;
+            }
+            String num = ent.getNumeric();
+            if ((num == null) || num.trim().length() == 0) {
+                num = "&#" + cp + ";";
+            }
+            String name = entityName(ent.getSymbolic());
+            String sym = (name == null) ? num : "&" + name + ";";
+            if (cp < MAX_TABLE_SIZE) {
+                numericTable[cp] = num;
+                symbolicTable[cp] = sym;
+            } else {
+                supplementary.put(Integer.valueOf(cp), new String[] { num, sym });
+            }
+            if (name != null) {
+                trieRoot.insert(name, new String(Character.toChars(cp)));
+                maxLen = Math.max(maxLen, name.length());
+            }
+        }
+        maxNameLength = maxLen;
+    }
+
+    /**
+     * Returns the maximum length of a symbolic entity name (without the 
+     * leading <code>&amp;</code> and trailing semicolon).
+     * 
+     * @return  the maximum entity name length
+     */
+    public int getMaxNameLength() 
+    {
+        return maxNameLength;
+    }
+    
+    /**
+     * Returns the character entity for the given character, or 
+     * <code>null</code> if no character entity is defined for the 
+     * character.
+     * 
+     * @param codePoint  the character
+     * @param symbolic  whether to return the symbolic (<code>true</code>) or 
+     *                  numeric (<code>false</code>) representation
+     * @return  the character entity, or <code>null</code>
+     */
+    public String getEntity(int codePoint, boolean symbolic) 
+    {
+        if ((codePoint >= 0) && (codePoint < numericTable.length)) {
+            return symbolic ? symbolicTable[codePoint] : numericTable[codePoint];
+        }
+        if (codePoint < MAX_TABLE_SIZE) {
+            return null;
+        }
+        String[] arr = supplementary.get(Integer.valueOf(codePoint));
+        return (arr == null) ? null : arr[symbolic ? 1 : 0];
+    }
+    
+    /**
+     * Replaces special characters by the corresponding character entities.
+     * See <code>StoreConnection.toCharEntities(String, boolean, boolean)</code>.
+     * If no character needs to be replaced, then <code>text</code> itself
+     * is returned.
+     * 
+     * @param text  the text to be encoded
+     * @param symbolic  whether to create symbolic or numeric entities
+     * @param keepEntities  whether existing character entities are kept
+     * @return  the encoded text
+     */
+    public String encode(String text, boolean symbolic, boolean keepEntities) 
+    {
+        if (text == null) {
+            return null;
+        }
+        int pos = findEncodePosition(text, 0, text.length(), keepEntities);
+        if (pos < 0) {
+            return text;
+        }
+        StringBuilder sb = new StringBuilder(text.length() + 16);
+        sb.append(text, 0, pos);
+        try {
+            encodeFrom(text, pos, text.length(), symbolic, keepEntities, sb);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);  // cannot occur for StringBuilder
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Writes the encoded form of <code>text</code> to <code>out</code>.
+     * 
+     * @param text  the text to be encoded
+     * @param symbolic  whether to create symbolic or numeric entities
+     * @param keepEntities  whether existing character entities are kept
+     * @param out  the output
+     * @throws IOException  if writing to <code>out</code> fails
+     */
+    public void encode(CharSequence text, boolean symbolic, boolean keepEntities, Appendable out) 
+    throws IOException 
+    {
+        encode(text, 0, text.length(), symbolic, keepEntities, out);
+    }
+
+    /**
+     * Writes the encoded form of the given sub-sequence to <code>out</code>.
+     * Note that an entity reference that is split between two 
+     * sub-sequences is not recognized if <code>keepEntities</code> is 
+     * <code>true</code>.
+     * 
+     * @param text  the text to be encoded
+     * @param start  the start index of the sub-sequence
+     * @param end  the end index (exclusive) of the sub-sequence
+     * @param symbolic  whether to create symbolic or numeric entities
+     * @param keepEntities  whether existing character entities are kept
+     * @param out  the output
+     * @throws IOException  if writing to <code>out</code> fails
+     */
+    public void encode(CharSequence text, int start, int end, boolean symbolic, 
+                       boolean keepEntities, Appendable out) throws IOException 
+    {
+        int pos = findEncodePosition(text, start, end, keepEntities);
+        if (pos < 0) {
+            out.append(text, start, end);
+        } else {
+            out.append(text, start, pos);
+            encodeFrom(text, pos, end, symbolic, keepEntities, out);
+        }
+    }
+    
+    /**
+     * Replaces all numeric character entities and all defined symbolic 
+     * character entities by the corresponding characters.
+     * See <code>StoreConnection.decodeCharEntities(String)</code>.
+     * If the string does not contain any character entity, then 
+     * <code>str</code> itself is returned.
+     * 
+     * @param str  the string to be decoded
+     * @return  the decoded string
+     */
+    public String decode(String str) 
+    {
+        if (str == null) {
+            return null;
+        }
+        // Find the first decodable entity before allocating any buffer
+        final int len = str.length();
+        int pos = str.indexOf('&');
+        try {
+            while (pos >= 0) {
+                if (matchEntity(str, pos, len, false, null, 0) > 0) {
+                    StringBuilder sb = new StringBuilder(len);
+                    sb.append(str, 0, pos);
+                    decodeFrom(str, pos, sb);
+                    return sb.toString();
+                }
+                pos = str.indexOf('&', pos + 1);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);  // cannot occur for StringBuilder
+        }
+        return str;
+    }
+
+    /**
+     * Writes the decoded form of <code>str</code> to <code>out</code>.
+     * 
+     * @param str  the string to be decoded
+     * @param out  the output
+     * @throws IOException  if writing to <code>out</code> fails
+     */
+    public void decode(CharSequence str, Appendable out) throws IOException 
+    {
+        decodeFrom(str, 0, out);
+    }
+
+    /**
+     * Tries to decode the character entity starting at position 
+     * <code>start</code> (the position of the <code>&amp;</code> character). 
+     * This method is intended for streaming decoders, which need to know 
+     * whether a complete entity could be recognized.
+     * 
+     * @param str  the text
+     * @param start  the position of the <code>&amp;</code> character
+     * @param end  the end of the available text
+     * @param out  the output, or <code>null</code>
+     * @return  the position after the entity if a complete, decodable entity 
+     *          has been found; <code>-1</code> if the text at 
+     *          <code>start</code> is not a decodable entity; or 
+     *          <code>-2</code> if more characters are required to decide
+     * @throws IOException  if writing to <code>out</code> fails
+     */
+    public int decodeEntityAt(CharSequence str, int start, int end, Appendable out) throws IOException 
+    {
+        return matchEntity(str, start, end, out != null, out, start);
+    }
+    
+    /**
+     * Returns the length of the entity reference (including <code>&amp;</code>
+     * and semicolon) that starts at position <code>start</code>, or 
+     * 0 if there is no syntactically valid entity reference. 
+     * 
+     * @param str  the text
+     * @param start  the position of the <code>&amp;</code> character
+     * @param end  the end of the available text
+     * @return  the length of the entity reference, or 0
+     */
+    public static int entityReferenceLength(CharSequence str, int start, int end) 
+    {
+        int i = start + 1;
+        if (i >= end) {
+            return 0;
+        }
+        char ch = str.charAt(i);
+        if (ch == '#') {
+            i++;
+            boolean hex = (i < end) && ((str.charAt(i) == 'x') || (str.charAt(i) == 'X'));
+            if (hex) {
+                i++;
+            }
+            int digitsStart = i;
+            while ((i < end) && (Character.digit(str.charAt(i), hex ? 16 : 10) >= 0)) i++;
+            if (i == digitsStart) {
+                return 0;
+            }
+        } else if (isNameStart(ch)) {
+            i++;
+            while ((i < end) && isNameChar(str.charAt(i))) i++;
+        } else {
+            return 0;
+        }
+        return ((i < end) && (str.charAt(i) == ';')) ? (i + 1 - start) : 0;
+    }
+
+    /**
+     * Returns <code>true</code> if the text between <code>start</code> and
+     * <code>end</code> is an incomplete entity reference, i.e. if
+     * appending further characters could result in a syntactically valid
+     * entity reference.
+     *
+     * @param str  the text
+     * @param start  the position of the <code>&amp;</code> character
+     * @param end  the end of the available text
+     * @return  whether the text is the prefix of an entity reference
+     */
+    public static boolean isEntityReferencePrefix(CharSequence str, int start, int end)
+    {
+        if ((start >= end) || (str.charAt(start) != '&')) {
+            return false;
+        }
+        int i = start + 1;
+        if (i >= end) {
+            return true;
+        }
+        char ch = str.charAt(i);
+        if (ch == '#') {
+            i++;
+            boolean hex = (i < end) && ((str.charAt(i) == 'x') || (str.charAt(i) == 'X'));
+            if (hex) {
+                i++;
+            }
+            while ((i < end) && (Character.digit(str.charAt(i), hex ? 16 : 10) >= 0)) i++;
+        } else if (isNameStart(ch)) {
+            i++;
+            while ((i < end) && isNameChar(str.charAt(i))) i++;
+        } else {
+            return false;
+        }
+        return (i >= end);
+    }
+
+    /* -------------- Private Methods ---------------- */
+
+    private void decodeFrom(CharSequence str, int start, Appendable out) throws IOException 
+    {
+        final int len = str.length();
+        int copyStart = start;
+        int i = start;
+        while (i < len) {
+            if (str.charAt(i) != '&') {
+                i++;
+                continue;
+            }
+            int entEnd = matchEntity(str, i, len, true, out, copyStart);
+            if (entEnd > 0) {
+                copyStart = i = entEnd;
+            } else {
+                i++;
+            }
+        }
+        out.append(str, copyStart, len);
+    }
+
+    private int findEncodePosition(CharSequence text, int start, int end, boolean keepEntities) 
+    {
+        for (int i = start; i < end; i++) {
+            char ch = text.charAt(i);
+            if (ch < numericTable.length) {
+                if ((numericTable[ch] != null) && 
+                    !(keepEntities && (ch == '&') && (entityReferenceLength(text, i, end) > 0))) {
+                    return i;
+                }
+            } else if (Character.isHighSurrogate(ch) && !supplementary.isEmpty() && 
+                       (i + 1 < end) && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(ch, text.charAt(i + 1));
+                if (supplementary.containsKey(Integer.valueOf(cp))) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+    
+    private void encodeFrom(CharSequence text, int start, int end, boolean symbolic, 
+                            boolean keepEntities, Appendable out) throws IOException 
+    {
+        final String[] table = symbolic ? symbolicTable : numericTable;
+        int copyStart = start;
+        int i = start;
+        while (i < end) {
+            char ch = text.charAt(i);
+            String ent = null;
+            int charLen = 1;
+            if (ch < table.length) {
+                ent = table[ch];
+                if ((ent != null) && keepEntities && (ch == '&')) {
+                    int refLen = entityReferenceLength(text, i, end);
+                    if (refLen > 0) {
+                        i += refLen;   // keep existing entity unchanged
+                        continue;
+                    }
+                }
+            } else if (Character.isHighSurrogate(ch) && !supplementary.isEmpty() && 
+                       (i + 1 < end) && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(ch, text.charAt(i + 1));
+                String[] arr = supplementary.get(Integer.valueOf(cp));
+                if (arr != null) {
+                    ent = arr[symbolic ? 1 : 0];
+                    charLen = 2;
+                }
+            }
+            if (ent != null) {
+                out.append(text, copyStart, i).append(ent);
+                i += charLen;
+                copyStart = i;
+            } else {
+                i++;
+            }
+        }
+        out.append(text, copyStart, end);
+    }
+    
+    /**
+     * Matches the entity at position start. If a decodable entity is found
+     * and write is true, then the text between copyStart and start, 
+     * followed by the decoded character, is written to out.
+     */
+    private int matchEntity(CharSequence str, int start, int end, boolean write, 
+                            Appendable out, int copyStart) throws IOException 
+    {
+        int i = start + 1;
+        if (i >= end) {
+            return -2;
+        }
+        char ch = str.charAt(i);
+        if (ch == '#') {
+            i++;
+            if (i >= end) {
+                return -2;
+            }
+            boolean hex = (str.charAt(i) == 'x') || (str.charAt(i) == 'X');
+            if (hex) {
+                i++;
+            }
+            int radix = hex ? 16 : 10;
+            int digitsStart = i;
+            long value = 0;
+            while (i < end) {
+                int d = Character.digit(str.charAt(i), radix);
+                if (d < 0) {
+                    break;
+                }
+                if (value <= Character.MAX_CODE_POINT) {
+                    value = value * radix + d;
+                }
+                i++;
+            }
+            if (i >= end) {
+                return -2;
+            }
+            if ((i == digitsStart) || (str.charAt(i) != ';') || 
+                (value > Character.MAX_CODE_POINT)) {
+                return -1;
+            }
+            if (write) {
+                out.append(str, copyStart, start);
+                int cp = (int) value;
+                if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                    out.append((char) cp);
+                } else {
+                    char[] pair = Character.toChars(cp);
+                    out.append(pair[0]).append(pair[1]);
+                }
+            }
+            return i + 1;
+        }
+        TrieNode node = trieRoot;
+        while (node != null) {
+            if (i >= end) {
+                return -2;
+            }
+            ch = str.charAt(i);
+            if (ch == ';') {
+                if (node.value == null) {
+                    return -1;
+                }
+                if (write) {
+                    out.append(str, copyStart, start).append(node.value);
+                }
+                return i + 1;
+            }
+            node = node.child(ch);
+            i++;
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the entity name without leading <code>&amp;</code> and 
+     * trailing semicolon, or <code>null</code> if no name is given.
+     */
+    private static String entityName(String symbolic) 
+    {
+        if (symbolic == null) {
+            return null;
+        }
+        String name = symbolic.trim();
+        if (name.startsWith("&")) {
+            name = name.substring(1);
+        }
+        if (name.endsWith(";")) {
+            name = name.substring(0, name.length() - 1);
+        }
+        return (name.length() == 0) ? null : name;
+    }
+    
+    private static boolean isNameStart(char ch) 
+    {
+        return ((ch >= 'a') && (ch <= 'z')) || ((ch >= 'A') && (ch <= 'Z')) || (ch == '_');
+    }
+
+    private static boolean isNameChar(char ch) 
+    {
+        return isNameStart(ch) || ((ch >= '0') && (ch <= '9')) || (ch == '.') || (ch == '-');
+    }
+    
+    /* -------------- Inner Classes ---------------- */
+    
+    private static class TrieNode 
+    {
+        private static final char[] NO_KEYS = new char[0];
+        private static final TrieNode[] NO_CHILDREN = new TrieNode[0];
+        
+        char[] keys = NO_KEYS;    // sorted
+        TrieNode[] children = NO_CHILDREN;
+        String value = null;
+        
+        TrieNode child(char ch) 
+        {
+            int idx = Arrays.binarySearch(keys, ch);
+            return (idx >= 0) ? children[idx] : null;
+        }
+        
+        void insert(String name, String val) 
+        {
+            TrieNode node = this;
+            for (int k = 0; k < name.length(); k++) {
+                char ch = name.charAt(k);
+                int idx = Arrays.binarySearch(node.keys, ch);
+                if (idx < 0) {
+                    idx = -(idx + 1);
+                    char[] newKeys = new char[node.keys.length + 1];
+                    TrieNode[] newChildren = new TrieNode[newKeys.length];
+                    System.arraycopy(node.keys, 0, newKeys, 0, idx);
+                    System.arraycopy(node.children, 0, newChildren, 0, idx);
+                    newKeys[idx] = ch;
+                    newChildren[idx] = new TrieNode();
+                    System.arraycopy(node.keys, idx, newKeys, idx + 1, node.keys.length - idx);
+                    System.arraycopy(node.children, idx, newChildren, idx + 1, node.children.length - idx);
+                    node.keys = newKeys;
+                    node.children = newChildren;
+                }
+                node = node.children[idx];
+            }
+            node.value = val;
+        }
+    }
+}
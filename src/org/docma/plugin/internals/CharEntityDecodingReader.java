@@ -0,0 +1,132 @@
+/*
+ * CharEntityDecodingReader.java
+ *
+ *  Copyright (C) 2018  Manfred Paula, http://www.docmenta.org
+ *   
+ *  This file is part of Docmenta. Docmenta is free software: you can 
+ *  redistribute it and/or modify it under the terms of the GNU Lesser 
+ *  General Public License as published by the Free Software Foundation, 
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Docmenta.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.docma.plugin.internals;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+
+/**
+ * Reader that replaces character entities by the corresponding characters
+ * while reading from the underlying reader. 
+ * The input is read in blocks, i.e. the memory consumption does not depend 
+ * on the length of the text.
+ *
+ * @author MP
+ * @see CharEntityDecodingWriter
+ */
+public class CharEntityDecodingReader extends FilterReader 
+{
+    private static final int BLOCK_SIZE = 8192;
+    
+    private final char[] inBuf = new char[BLOCK_SIZE];
+    private final StringWriter decodedOut = new StringWriter(BLOCK_SIZE);
+    private final StringBuffer decoded = decodedOut.getBuffer();
+    private final CharEntityDecodingWriter decoder;
+    private int readPos = 0;
+    private boolean eof = false;
+
+    public CharEntityDecodingReader(Reader in, CharEntityCodec codec) 
+    {
+        super(in);
+        this.decoder = new CharEntityDecodingWriter(decodedOut, codec);
+    }
+
+    public int read() throws IOException 
+    {
+        synchronized (lock) {
+            if (! fill()) {
+                return -1;
+            }
+            return decoded.charAt(readPos++);
+        }
+    }
+
+    public int read(char[] cbuf, int off, int len) throws IOException 
+    {
+        if (len == 0) {
+            return 0;
+        }
+        synchronized (lock) {
+            if (! fill()) {
+                return -1;
+            }
+            int cnt = Math.min(len, decoded.length() - readPos);
+            decoded.getChars(readPos, readPos + cnt, cbuf, off);
+            readPos += cnt;
+            return cnt;
+        }
+    }
+
+    public long skip(long n) throws IOException 
+    {
+        synchronized (lock) {
+            long skipped = 0;
+            while ((skipped < n) && fill()) {
+                int cnt = (int) Math.min(n - skipped, decoded.length() - readPos);
+                readPos += cnt;
+                skipped += cnt;
+            }
+            return skipped;
+        }
+    }
+
+    public boolean ready() throws IOException 
+    {
+        synchronized (lock) {
+            return (readPos < decoded.length()) || in.ready();
+        }
+    }
+
+    public boolean markSupported() 
+    {
+        return false;
+    }
+
+    public void mark(int readAheadLimit) throws IOException 
+    {
+        throw new IOException("mark() not supported");
+    }
+
+    public void reset() throws IOException 
+    {
+        throw new IOException("reset() not supported");
+    }
+
+    /* -------------- Private Methods ---------------- */
+
+    /**
+     * Makes sure that decoded characters are available. Returns 
+     * <code>false</code> if the end of the stream has been reached.
+     */
+    private boolean fill() throws IOException 
+    {
+        while (readPos >= decoded.length()) {
+            decoded.setLength(0);
+            readPos = 0;
+            if (eof) {
+                return false;
+            }
+            int cnt = in.read(inBuf, 0, inBuf.length);
+            if (cnt < 0) {
+                eof = true;
+                decoder.finish();
+            } else {
+                decoder.write(inBuf, 0, cnt);
+            }
+        }
+        return true;
+    }
+}
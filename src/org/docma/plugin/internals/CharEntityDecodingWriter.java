@@ -0,0 +1,149 @@
+/*
+ * CharEntityDecodingWriter.java
+ *
+ *  Copyright (C) 2018  Manfred Paula, http://www.docmenta.org
+ *   
+ *  This file is part of Docmenta. Docmenta is free software: you can 
+ *  redistribute it and/or modify it under the terms of the GNU Lesser 
+ *  General Public License as published by the Free Software Foundation, 
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Docmenta.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.docma.plugin.internals;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * Writer that replaces character entities by the corresponding characters 
+ * while streaming the text to the underlying writer. 
+ * The result is the same as the result of 
+ * {@link CharEntityCodec#decode(String)}, except that entity references 
+ * longer than {@link #getMaxLookahead()} characters are not decoded.
+ * 
+ * <p>Only a few characters are buffered (the start of an entity reference 
+ * that is split between two write operations). Therefore, the memory 
+ * consumption does not depend on the length of the text. 
+ * Note that {@link #finish()} or {@link #close()} has to be called after 
+ * the last character has been written.</p>
+ *
+ * @author MP
+ * @see CharEntityDecodingReader
+ */
+public class CharEntityDecodingWriter extends FilterWriter 
+{
+    private final CharEntityCodec codec;
+    private final int maxLookahead;
+    private final StringBuilder pending = new StringBuilder();
+
+    public CharEntityDecodingWriter(Writer out, CharEntityCodec codec) 
+    {
+        super(out);
+        this.codec = codec;
+        this.maxLookahead = Math.max(32, codec.getMaxNameLength() + 2);
+    }
+
+    public int getMaxLookahead() 
+    {
+        return maxLookahead;
+    }
+    
+    public void write(int c) throws IOException 
+    {
+        write(new char[] { (char) c }, 0, 1);
+    }
+
+    public void write(char[] cbuf, int off, int len) throws IOException 
+    {
+        synchronized (lock) {
+            final int end = off + len;
+            int i = off;
+            while ((pending.length() > 0) && (i < end)) {
+                pending.append(cbuf[i++]);
+                resolvePending(false);
+            }
+            if (i < end) {
+                decodeChunk(cbuf, i, end);
+            }
+        }
+    }
+
+    public void write(String str, int off, int len) throws IOException 
+    {
+        char[] buf = new char[len];
+        str.getChars(off, off + len, buf, 0);
+        write(buf, 0, len);
+    }
+
+    /**
+     * Writes all buffered characters to the underlying writer, without 
+     * closing the underlying writer. Must only be called after the last 
+     * character has been written.
+     * 
+     * @throws IOException  if writing fails
+     */
+    public void finish() throws IOException 
+    {
+        synchronized (lock) {
+            if (pending.length() > 0) {
+                resolvePending(true);
+            }
+        }
+    }
+    
+    public void close() throws IOException 
+    {
+        finish();
+        super.close();
+    }
+
+    /* -------------- Private Methods ---------------- */
+
+    private void decodeChunk(char[] buf, int start, int end) throws IOException 
+    {
+        CharBuffer seq = CharBuffer.wrap(buf);
+        int copyStart = start;
+        int i = start;
+        while (i < end) {
+            if (buf[i] != '&') {
+                i++;
+                continue;
+            }
+            out.write(buf, copyStart, i - copyStart);
+            copyStart = i;
+            int res = codec.decodeEntityAt(seq, i, end, out);
+            if (res > 0) {
+                copyStart = i = res;
+            } else if ((res == -2) && (end - i < maxLookahead)) {
+                pending.append(buf, i, end - i);  // entity continues in next chunk
+                return;
+            } else {
+                i++;
+            }
+        }
+        out.write(buf, copyStart, end - copyStart);
+    }
+    
+    private void resolvePending(boolean force) throws IOException 
+    {
+        int len = pending.length();
+        int res = codec.decodeEntityAt(pending, 0, len, null);
+        if (res > 0) {
+            codec.decodeEntityAt(pending, 0, len, out);
+            pending.setLength(0);
+        } else if (force || (res == -1) || (len >= maxLookahead)) {
+            out.write('&');
+            char[] rest = new char[len - 1];
+            pending.getChars(1, len, rest, 0);
+            pending.setLength(0);
+            decodeChunk(rest, 0, rest.length);
+            if (force && (pending.length() > 0)) {
+                resolvePending(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * CharEntityEncodingWriter.java
+ *
+ *  Copyright (C) 2018  Manfred Paula, http://www.docmenta.org
+ *   
+ *  This file is part of Docmenta. Docmenta is free software: you can 
+ *  redistribute it and/or modify it under the terms of the GNU Lesser 
+ *  General Public License as published by the Free Software Foundation, 
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Docmenta.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.docma.plugin.internals;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * Writer that replaces special characters by character entities while 
+ * streaming the text to the underlying writer. 
+ * The result is the same as the result of 
+ * {@link CharEntityCodec#encode(String, boolean, boolean)}, except that
+ * existing entity references longer than 
+ * {@link #getMaxLookahead()} characters are not recognized if 
+ * <code>keepEntities</code> is <code>true</code>.
+ * 
+ * <p>Only a few characters are buffered (the start of an entity reference 
+ * or a surrogate pair that is split between two write operations). Therefore, the memory 
+ * consumption does not depend on the length of the text. 
+ * Note that {@link #finish()} or {@link #close()} has to be called after 
+ * the last character has been written.</p>
+ *
+ * @author MP
+ */
+public class CharEntityEncodingWriter extends FilterWriter 
+{
+    private final CharEntityCodec codec;
+    private final boolean symbolic;
+    private final boolean keepEntities;
+    private final int maxLookahead;
+    private final StringBuilder pending = new StringBuilder();
+
+    public CharEntityEncodingWriter(Writer out, CharEntityCodec codec, boolean symbolic, boolean keepEntities) 
+    {
+        super(out);
+        this.codec = codec;
+        this.symbolic = symbolic;
+        // Lookahead is only required if '&' is to be encoded
+        this.keepEntities = keepEntities && (codec.getEntity('&', false) != null);
+        this.maxLookahead = Math.max(32, codec.getMaxNameLength() + 2);
+    }
+
+    public int getMaxLookahead() 
+    {
+        return maxLookahead;
+    }
+    
+    public void write(int c) throws IOException 
+    {
+        write(new char[] { (char) c }, 0, 1);
+    }
+
+    public void write(char[] cbuf, int off, int len) throws IOException 
+    {
+        synchronized (lock) {
+            final int end = off + len;
+            int i = off;
+            while ((pending.length() > 0) && (i < end)) {
+                pending.append(cbuf[i++]);
+                resolvePending(false);
+            }
+            if (i < end) {
+                encodeChunk(cbuf, i, end, false);
+            }
+        }
+    }
+
+    public void write(String str, int off, int len) throws IOException 
+    {
+        char[] buf = new char[len];
+        str.getChars(off, off + len, buf, 0);
+        write(buf, 0, len);
+    }
+
+    /**
+     * Writes all buffered characters to the underlying writer, without 
+     * closing the underlying writer. Must only be called after the last 
+     * character has been written.
+     * 
+     * @throws IOException  if writing fails
+     */
+    public void finish() throws IOException 
+    {
+        synchronized (lock) {
+            if (pending.length() > 0) {
+                resolvePending(true);
+            }
+        }
+    }
+    
+    public void close() throws IOException 
+    {
+        finish();
+        super.close();
+    }
+
+    /* -------------- Private Methods ---------------- */
+
+    /**
+     * Encodes the given chunk. Unless last is true, the start of an entity 
+     * reference or a high surrogate at the end of the chunk is moved to 
+     * the pending buffer, as it might be continued by the next chunk. 
+     */
+    private void encodeChunk(char[] buf, int start, int end, boolean last) throws IOException 
+    {
+        CharBuffer seq = CharBuffer.wrap(buf);
+        int encodeEnd = end;
+        if (! last) {
+            if (keepEntities) {
+                int minPos = Math.max(start, end - maxLookahead);
+                for (int p = end - 1; p >= minPos; p--) {
+                    if (buf[p] == '&') {
+                        if (CharEntityCodec.isEntityReferencePrefix(seq, p, end)) {
+                            encodeEnd = p;
+                        }
+                        break;
+                    }
+                }
+            }
+            if ((encodeEnd == end) && (end > start) && Character.isHighSurrogate(buf[end - 1])) {
+                encodeEnd = end - 1;   // low surrogate might follow in next chunk
+            }
+        }
+        codec.encode(seq, start, encodeEnd, symbolic, keepEntities, out);
+        if (encodeEnd < end) {
+            pending.append(buf, encodeEnd, end - encodeEnd);
+        }
+    }
+    
+    private void resolvePending(boolean force) throws IOException 
+    {
+        int len = pending.length();
+        if (pending.charAt(0) != '&') {
+            // Pending high surrogate
+            if (force || (len > 1)) {
+                char[] arr = new char[len];
+                pending.getChars(0, len, arr, 0);
+                pending.setLength(0);
+                encodeChunk(arr, 0, len, force);
+            }
+        } else if (CharEntityCodec.entityReferenceLength(pending, 0, len) > 0) {
+            out.write(pending.toString());   // keep existing entity
+            pending.setLength(0);
+        } else if (force || (len >= maxLookahead) || 
+                   !CharEntityCodec.isEntityReferencePrefix(pending, 0, len)) {
+            out.write(codec.getEntity('&', symbolic));
+            char[] rest = new char[len - 1];
+            pending.getChars(1, len, rest, 0);
+            pending.setLength(0);
+            encodeChunk(rest, 0, rest.length, force);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * CompiledLabelProvider.java
+ *
+ *  Copyright (C) 2018  Manfred Paula, http://www.docmenta.org
+ *   
+ *  This file is part of Docmenta. Docmenta is free software: you can 
+ *  redistribute it and/or modify it under the terms of the GNU Lesser 
+ *  General Public License as published by the Free Software Foundation, 
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Docmenta.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.docma.plugin.internals;
+
+import java.text.MessageFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Label provider that compiles the labels of each locale into a flat array,
+ * which is indexed by an interned key identifier. 
+ * The labels of a locale are compiled on first use. The compiled 
+ * <code>MessageFormat</code> instances are cached as well. The compiled 
+ * labels of the 64 most recently used locales are kept. 
+ * Callers that render many labels can resolve the key identifiers once 
+ * (see {@link #getKeyId(String)}) and use 
+ * {@link #getLabel(Locale, int, Object[])} to avoid any string lookup.
+ * 
+ * <p>The labels are retrieved from a {@link LabelSource}. If the labels 
+ * change, for example because a plug-in has been loaded or unloaded, then 
+ * {@link #reload()} has to be called. Instances of this class are 
+ * thread-safe.</p>
+ *
+ * @author MP
+ * @see LabelUtil#setLabelProvider(LabelProvider)
+ */
+public class CompiledLabelProvider implements LabelProvider
+{
+    /**
+     * Supplies the labels to be compiled.
+     */
+    public interface LabelSource
+    {
+        /**
+         * Returns all labels for the given locale, including the labels  
+         * inherited from fall-back locales.
+         * 
+         * @param locale  the locale
+         * @return  map of label key to label
+         */
+        Map<String, String> getLabels(Locale locale);
+    }
+    
+    // Maximum number of locales for which compiled labels are cached.
+    // The least recently used locale is discarded first.
+    private static final int MAX_CACHED_BUNDLES = 64;
+    
+    private final LabelSource source;
+    private final ConcurrentHashMap<String, Integer> keyIds = new ConcurrentHashMap<String, Integer>();
+    // Replaced on reload, so that a bundle compiled concurrently to a reload
+    // is not stored in the new map.
+    private volatile BundleCache bundles = new BundleCache();
+    private int nextKeyId = 0;  // guarded by keyIds
+
+    public CompiledLabelProvider(LabelSource source)
+    {
+        this.source = source;
+    }
+    
+    /**
+     * Returns the identifier of the given label key, or -1 if the key is 
+     * unknown. Key identifiers remain valid after {@link #reload()}.
+     * 
+     * @param key  the label key
+     * @return  the key identifier or -1
+     */
+    public int getKeyId(String key)
+    {
+        Integer id = keyIds.get(key);
+        return (id == null) ? -1 : id.intValue();
+    }
+
+    public String getLabel(Locale locale, String key, Object[] args)
+    {
+        // Get the bundle first, because the key is interned on compilation
+        Bundle bundle = getBundle(locale);
+        Integer id = keyIds.get(key);
+        String label = (id == null) ? null : getLabel(bundle, locale, id.intValue(), args);
+        return (label == null) ? key : label;
+    }
+    
+    /**
+     * Returns the label with the given key identifier, or <code>null</code>
+     * if no label exists.
+     * 
+     * @param locale  the locale
+     * @param keyId  the key identifier as returned by {@link #getKeyId(String)}
+     * @param args  the arguments to be inserted for placeholders, or 
+     *              <code>null</code>
+     * @return  the localized label or <code>null</code>
+     */
+    public String getLabel(Locale locale, int keyId, Object[] args)
+    {
+        return getLabel(getBundle(locale), locale, keyId, args);
+    }
+    
+    /**
+     * Discards all compiled labels. The labels are compiled again on next 
+     * access. This method has to be called whenever the labels change, 
+     * for example when a plug-in is loaded or unloaded.
+     */
+    public void reload()
+    {
+        bundles = new BundleCache();
+    }
+    
+    /* -------------- Private Methods ---------------- */
+
+    private String getLabel(Bundle bundle, Locale locale, int keyId, Object[] args)
+    {
+        if ((keyId < 0) || (keyId >= bundle.labels.length)) {
+            return null;
+        }
+        String label = bundle.labels[keyId];
+        if ((label == null) || (args == null) || (args.length == 0)) {
+            return label;
+        }
+        MessageFormat mf = bundle.formats.get(keyId);
+        if (mf == null) {
+            mf = new MessageFormat(label, locale);
+            if (! bundle.formats.compareAndSet(keyId, null, mf)) {
+                mf = bundle.formats.get(keyId);
+            }
+        }
+        synchronized (mf) {  // MessageFormat is not thread-safe
+            return mf.format(args);
+        }
+    }
+
+    private Bundle getBundle(Locale locale)
+    {
+        final BundleCache cache = bundles;
+        Bundle bundle;
+        synchronized (cache) {
+            bundle = cache.get(locale);
+        }
+        if (bundle == null) {
+            bundle = compile(locale);  // compile outside of lock
+            synchronized (cache) {
+                Bundle existing = cache.get(locale);
+                if (existing != null) {
+                    bundle = existing;
+                } else {
+                    cache.put(locale, bundle);
+                }
+            }
+        }
+        return bundle;
+    }
+    
+    private Bundle compile(Locale locale)
+    {
+        Map<String, String> labelMap = source.getLabels(locale);
+        String[] labels;
+        synchronized (keyIds) {
+            for (String key : labelMap.keySet()) {
+                if (! keyIds.containsKey(key)) {
+                    keyIds.put(key, Integer.valueOf(nextKeyId++));
+                }
+            }
+            labels = new String[nextKeyId];
+        }
+        for (Map.Entry<String, String> entry : labelMap.entrySet()) {
+            labels[keyIds.get(entry.getKey()).intValue()] = entry.getValue();
+        }
+        return new Bundle(labels);
+    }
+    
+    /* -------------- Inner Classes ---------------- */
+
+    /**
+     * Map of locale to compiled labels in access order, which discards the 
+     * least recently used entry if the maximum size is exceeded. 
+     * Not thread-safe; access has to be synchronized on the instance.
+     */
+    private static class BundleCache extends LinkedHashMap<Locale, Bundle>
+    {
+        private static final long serialVersionUID = 1L;
+        
+        BundleCache()
+        {
+            super(16, 0.75f, true);
+        }
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Locale, Bundle> eldest)
+        {
+            return size() > MAX_CACHED_BUNDLES;
+        }
+    }
+
+    private static class Bundle
+    {
+        final String[] labels;   // indexed by key id
+        final AtomicReferenceArray<MessageFormat> formats;
+        
+        Bundle(String[] labels)
+        {
+            this.labels = labels;
+            this.formats = new AtomicReferenceArray<MessageFormat>(labels.length);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * ContentAppHandlerIndex.java
+ *
+ *  Copyright (C) 2018  Manfred Paula, http://www.docmenta.org
+ *   
+ *  This file is part of Docmenta. Docmenta is free software: you can 
+ *  redistribute it and/or modify it under the terms of the GNU Lesser 
+ *  General Public License as published by the Free Software Foundation, 
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Docmenta.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.docma.plugin.internals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.docma.plugin.web.ContentAppHandler;
+import org.docma.plugin.web.DefaultContentAppHandler;
+
+/**
+ * Global index that maps file extensions to the content application 
+ * handlers that support editing or viewing of files with this extension.
+ * The extension lookup is case-insensitive, and a leading dot is ignored.
+ * 
+ * <p>Handlers are not registered automatically. The application core has 
+ * to call {@link #register(ContentAppHandler)} after the handler's 
+ * <code>initialize</code> method has returned, and 
+ * {@link #unregister(String)} when the content application is removed. 
+ * The supported extensions are read once on registration; if they change, 
+ * the handler has to be registered again.</p>
+ * 
+ * <p>The index is rebuilt on each modification (copy-on-write). Lookups do 
+ * not require any locking and return shared arrays, which must not be 
+ * modified by the caller.</p>
+ *
+ * @author MP
+ */
+public class ContentAppHandlerIndex 
+{
+    private static final ContentAppHandler[] NO_HANDLERS = new ContentAppHandler[0];
+    
+    // Registered handlers by application ID, in registration order (guarded by class lock)
+    private static final Map<String, ContentAppHandler> handlers = new LinkedHashMap<String, ContentAppHandler>();
+
+    private static volatile Index index = new Index(Collections.<ContentAppHandler>emptyList());
+
+    /**
+     * Private constructor to avoid the creation of instances. 
+     * This class only provides static utility methods.
+     */
+    private ContentAppHandlerIndex() 
+    {
+    }
+
+    /**
+     * Adds the given handler to the index. If a handler with the same 
+     * application ID is already registered, then it is replaced.
+     * Has to be called again, if the supported extensions of the 
+     * handler change.
+     * 
+     * @param handler  the initialized handler
+     */
+    public static synchronized void register(ContentAppHandler handler) 
+    {
+        handlers.put(handler.getApplicationId(), handler);
+        index = new Index(new ArrayList<ContentAppHandler>(handlers.values()));
+    }
+
+    /**
+     * Removes the handler with the given application ID from the index.
+     * 
+     * @param applicationId  the application ID of the handler
+     */
+    public static synchronized void unregister(String applicationId) 
+    {
+        if (handlers.remove(applicationId) != null) {
+            index = new Index(new ArrayList<ContentAppHandler>(handlers.values()));
+        }
+    }
+
+    /**
+     * Returns the handlers that support editing of files with the given 
+     * extension, in registration order.
+     * 
+     * @param ext  the file extension
+     * @return  the handlers; an empty array if no handler supports the 
+     *          extension
+     */
+    public static ContentAppHandler[] getEditHandlers(String ext) 
+    {
+        ContentAppHandler[] arr = index.editMap.get(DefaultContentAppHandler.normalizeExt(ext));
+        return (arr == null) ? NO_HANDLERS : arr;
+    }
+
+    /**
+     * Returns the handlers that support viewing of files with the given 
+     * extension, in registration order.
+     * 
+     * @param ext  the file extension
+     * @return  the handlers; an empty array if no handler supports the 
+     *          extension
+     */
+    public static ContentAppHandler[] getViewHandlers(String ext) 
+    {
+        ContentAppHandler[] arr = index.viewMap.get(DefaultContentAppHandler.normalizeExt(ext));
+        return (arr == null) ? NO_HANDLERS : arr;
+    }
+
+    /**
+     * Returns the registered handler with the given application ID, or 
+     * <code>null</code> if no such handler is registered.
+     * 
+     * @param applicationId  the application ID
+     * @return  the handler or <code>null</code>
+     */
+    public static ContentAppHandler getHandler(String applicationId) 
+    {
+        return index.byId.get(applicationId);
+    }
+    
+    /* -------------- Inner Classes ---------------- */
+
+    private static class Index
+    {
+        final Map<String, ContentAppHandler> byId = new HashMap<String, ContentAppHandler>();
+        final Map<String, ContentAppHandler[]> editMap;
+        final Map<String, ContentAppHandler[]> viewMap;
+        
+        Index(List<ContentAppHandler> list)
+        {
+            Map<String, List<ContentAppHandler>> edit = new HashMap<String, List<ContentAppHandler>>();
+            Map<String, List<ContentAppHandler>> view = new HashMap<String, List<ContentAppHandler>>();
+            for (ContentAppHandler h : list) {
+                byId.put(h.getApplicationId(), h);
+                addExtensions(edit, h.getSupportedEditExtensions(), h);
+                addExtensions(view, h.getSupportedViewExtensions(), h);
+            }
+            editMap = toArrayMap(edit);
+            viewMap = toArrayMap(view);
+        }
+        
+        private static void addExtensions(Map<String, List<ContentAppHandler>> map, 
+                                          String[] exts, ContentAppHandler h)
+        {
+            if (exts == null) {
+                return;
+            }
+            for (String ext : exts) {
+                String key = DefaultContentAppHandler.normalizeExt(ext);
+                List<ContentAppHandler> hlist = map.get(key);
+                if (hlist == null) {
+                    hlist = new ArrayList<ContentAppHandler>(2);
+                    map.put(key, hlist);
+                }
+                if (! hlist.contains(h)) {
+                    hlist.add(h);
+                }
+            }
+        }
+        
+        private static Map<String, ContentAppHandler[]> toArrayMap(Map<String, List<ContentAppHandler>> map)
+        {
+            Map<String, ContentAppHandler[]> res = new HashMap<String, ContentAppHandler[]>(map.size() * 2);
+            for (Map.Entry<String, List<ContentAppHandler>> entry : map.entrySet()) {
+                List<ContentAppHandler> hlist = entry.getValue();
+                res.put(entry.getKey(), hlist.toArray(new ContentAppHandler[hlist.size()]));
+            }
+            return res;
+        }
+    }
+}
@@ -36,10 +36,139 @@ public class ContentEditUtil
                 content2 = "";
             }
             // Ignore all whitespace (e.g. after closing paragraph or at end of content). 
-            String c1 = content1.replace("&#160;", "").replace(" ", "").replace("\n", "").replace("\r", "");
-            String c2 = content2.replace("&#160;", "").replace(" ", "").replace("\n", "").replace("\r", "");
-            return c1.equals(c2);
+            return (content1 == content2) || (compareIgnoreWhitespace(content1, content2) < 0);
         }
     }
 
+    /**
+     * Same as {@link #contentIsEqual(String, String, boolean)}, but returns
+     * <code>false</code> without comparing the contents, if both contents
+     * are not <code>null</code> and the given hash values differ.
+     * The hash values have to be computed by 
+     * {@link #contentHash(String, boolean)} with the same 
+     * <code>strict_compare</code> value.
+     * 
+     * @param content1  the first content
+     * @param hash1  the hash value of the first content
+     * @param content2  the second content
+     * @param hash2  the hash value of the second content
+     * @param strict_compare  whether whitespace is significant
+     * @return  whether the contents are equal
+     */
+    public static boolean contentIsEqual(String content1, int hash1, 
+                                         String content2, int hash2, 
+                                         boolean strict_compare)
+    {
+        if ((content1 != null) && (content2 != null) && (hash1 != hash2)) {
+            return false;
+        }
+        return contentIsEqual(content1, content2, strict_compare);
+    }
+
+    /**
+     * Returns a hash value that is consistent with 
+     * {@link #contentIsEqual(String, String, boolean)}, i.e. contents that
+     * are equal have the same hash value.
+     * If <code>strict_compare</code> is <code>false</code>, then the
+     * ignored whitespace does not contribute to the hash value.
+     * 
+     * @param content  the content, or <code>null</code>
+     * @param strict_compare  whether whitespace is significant
+     * @return  the hash value
+     */
+    public static int contentHash(String content, boolean strict_compare)
+    {
+        if (content == null) {
+            return 0;
+        }
+        if (strict_compare) {
+            return content.hashCode();
+        }
+        final int len = content.length();
+        int h = 0;
+        int i = skipWhitespace(content, 0, len);
+        while (i < len) {
+            h = 31 * h + content.charAt(i);
+            i = skipWhitespace(content, i + 1, len);
+        }
+        return h;
+    }
+
+    /**
+     * Returns the offset of the first difference between the two contents,
+     * or -1 if the contents are equal.
+     * The returned offset is a position in <code>content1</code>. If 
+     * <code>content1</code> is a prefix of <code>content2</code>, then the 
+     * length of <code>content1</code> is returned.
+     * If <code>strict_compare</code> is <code>false</code>, then whitespace
+     * is ignored in the same way as by 
+     * {@link #contentIsEqual(String, String, boolean)}.
+     * A <code>null</code> value is treated like an empty string.
+     * 
+     * @param content1  the first content
+     * @param content2  the second content
+     * @param strict_compare  whether whitespace is significant
+     * @return  the offset of the first difference in <code>content1</code>,
+     *          or -1 if the contents are equal
+     */
+    public static int firstDifference(String content1, String content2, boolean strict_compare)
+    {
+        if (content1 == null) {
+            content1 = "";
+        }
+        if (content2 == null) {
+            content2 = "";
+        }
+        if (! strict_compare) {
+            return compareIgnoreWhitespace(content1, content2);
+        }
+        final int len1 = content1.length();
+        final int len2 = content2.length();
+        final int min = Math.min(len1, len2);
+        for (int i = 0; i < min; i++) {
+            if (content1.charAt(i) != content2.charAt(i)) {
+                return i;
+            }
+        }
+        return (len1 == len2) ? -1 : min;
+    }
+
+    /* -------------- Private Methods ---------------- */
+
+    /**
+     * Compares both strings in a single pass, ignoring the sequence 
+     * "&amp;#160;", spaces and line breaks. Returns the offset of the 
+     * first difference in s1, or -1 if the strings are equal.
+     */
+    private static int compareIgnoreWhitespace(String s1, String s2)
+    {
+        final int len1 = s1.length();
+        final int len2 = s2.length();
+        int i1 = skipWhitespace(s1, 0, len1);
+        int i2 = skipWhitespace(s2, 0, len2);
+        while ((i1 < len1) && (i2 < len2)) {
+            if (s1.charAt(i1) != s2.charAt(i2)) {
+                return i1;
+            }
+            i1 = skipWhitespace(s1, i1 + 1, len1);
+            i2 = skipWhitespace(s2, i2 + 1, len2);
+        }
+        return ((i1 >= len1) && (i2 >= len2)) ? -1 : i1;
+    }
+
+    private static int skipWhitespace(String s, int pos, int len)
+    {
+        while (pos < len) {
+            char ch = s.charAt(pos);
+            if ((ch == ' ') || (ch == '\n') || (ch == '\r')) {
+                pos++;
+            } else if ((ch == '&') && s.startsWith("&#160;", pos)) {
+                pos += 6;
+            } else {
+                break;
+            }
+        }
+        return pos;
+    }
+
 }
@@ -0,0 +1,148 @@
+/*
+ * ContentFingerprint.java
+ *
+ *  Copyright (C) 2018  Manfred Paula, http://www.docmenta.org
+ *   
+ *  This file is part of Docmenta. Docmenta is free software: you can 
+ *  redistribute it and/or modify it under the terms of the GNU Lesser 
+ *  General Public License as published by the Free Software Foundation, 
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Docmenta.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.docma.plugin.internals;
+
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Immutable fingerprint of a content string. A fingerprint is captured when 
+ * the content is saved from an editor, and is compared with the content that 
+ * is saved next. 
+ * 
+ * <p>A strict fingerprint consists of the SHA-256 digest of the UTF-8 
+ * encoded content and the content length. If a strict fingerprint matches, 
+ * then the content can be regarded as unchanged, i.e. saving the content 
+ * can be skipped.</p>
+ * 
+ * <p>A non-strict fingerprint consists of the hash value computed by 
+ * {@link ContentEditUtil#contentHash(String, boolean)}, i.e. whitespace is 
+ * ignored in the same way as by 
+ * {@link ContentEditUtil#contentIsEqual(String, String, boolean)}. 
+ * As different contents can have the same hash value, a matching non-strict 
+ * fingerprint only indicates that the content is probably unchanged. 
+ * It must not be used to skip saving of the content.</p>
+ *
+ * @author MP
+ * @see ContentFingerprints
+ */
+public class ContentFingerprint implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final byte[] digest;   // null if not strict
+    private final int hash;
+    private final int length;      // -1 if not strict
+
+    private ContentFingerprint(byte[] digest, int hash, int length) 
+    {
+        this.digest = digest;
+        this.hash = hash;
+        this.length = length;
+    }
+    
+    /**
+     * Creates the fingerprint of the given content.
+     * A <code>null</code> value is treated like an empty string.
+     * 
+     * @param content  the content
+     * @param strict  whether to create a strict fingerprint
+     * @return  the fingerprint
+     */
+    public static ContentFingerprint create(String content, boolean strict) 
+    {
+        if (content == null) {
+            content = "";
+        }
+        if (! strict) {
+            return new ContentFingerprint(null, ContentEditUtil.contentHash(content, false), -1);
+        }
+        byte[] dig = computeDigest(content);
+        int h = ((dig[0] & 0xFF) << 24) | ((dig[1] & 0xFF) << 16) | 
+                ((dig[2] & 0xFF) << 8) | (dig[3] & 0xFF);
+        return new ContentFingerprint(dig, h, content.length());
+    }
+
+    /**
+     * Returns <code>true</code> if the given content has the same 
+     * fingerprint as this fingerprint. 
+     * 
+     * @param content  the content to be compared
+     * @return  <code>false</code> if the content has changed; 
+     *          otherwise <code>true</code>
+     */
+    public boolean matches(String content) 
+    {
+        if (content == null) {
+            content = "";
+        }
+        if (digest == null) {
+            return hash == ContentEditUtil.contentHash(content, false);
+        }
+        if (content.length() != length) {
+            return false;   // no need to compute digest
+        }
+        return Arrays.equals(digest, computeDigest(content));
+    }
+    
+    public boolean isStrict() 
+    {
+        return (digest != null);
+    }
+
+    public boolean equals(Object obj) 
+    {
+        if (!(obj instanceof ContentFingerprint)) {
+            return false;
+        }
+        ContentFingerprint other = (ContentFingerprint) obj;
+        return (hash == other.hash) && (length == other.length) && 
+               Arrays.equals(digest, other.digest);
+    }
+
+    public int hashCode() 
+    {
+        return hash;
+    }
+
+    public String toString() 
+    {
+        if (digest == null) {
+            return Integer.toHexString(hash) + "~";
+        }
+        char[] res = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            res[2*i] = HEX_DIGITS[(digest[i] >> 4) & 0x0F];
+            res[2*i + 1] = HEX_DIGITS[digest[i] & 0x0F];
+        }
+        return new String(res) + ":" + length;
+    }
+
+    /* -------------- Private Methods ---------------- */
+
+    private static byte[] computeDigest(String content) 
+    {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content.getBytes("UTF-8"));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);  // SHA-256 is always supported
+        } catch (UnsupportedEncodingException ex) {
+            throw new RuntimeException(ex);  // UTF-8 is always supported
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * ContentFingerprints.java
+ *
+ *  Copyright (C) 2018  Manfred Paula, http://www.docmenta.org
+ *   
+ *  This file is part of Docmenta. Docmenta is free software: you can 
+ *  redistribute it and/or modify it under the terms of the GNU Lesser 
+ *  General Public License as published by the Free Software Foundation, 
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Docmenta.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.docma.plugin.internals;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.servlet.http.HttpSession;
+import org.docma.plugin.Node;
+import org.docma.plugin.PubContent;
+import org.docma.plugin.StoreConnection;
+import org.docma.plugin.web.WebUserSession;
+
+/**
+ * Registry of the fingerprints of the contents that have been saved from 
+ * an editor. The fingerprints are stored in the HTTP session of the user, 
+ * i.e. they are discarded when the session ends. Within a session, the 
+ * fingerprints are stored per store, version, translation language and 
+ * node.
+ * 
+ * <p>When the user saves the content, the save operation calls 
+ * {@link #isUnchanged(WebUserSession, String, String)} before any other 
+ * processing. If the content is unchanged, then the save operation can be 
+ * skipped entirely (i.e. no HTML preparation, no rule checks, no creation 
+ * of a revision and no persistence). Otherwise, after the content has been
+ * saved, the fingerprint is updated by 
+ * {@link #capture(WebUserSession, String, String)}. When the editor is 
+ * closed, {@link #remove(WebUserSession, String)} should be called.</p>
+ * 
+ * <p>No fingerprint is computed when the editor is opened. If no 
+ * fingerprint exists on the first save, then the content is compared with 
+ * the stored content directly. A fingerprint is only used as long as the 
+ * modification stamp of the node is unchanged (see 
+ * {@link Node#getModificationStamp()}), i.e. a modification by another 
+ * operation is not hidden by the fingerprint.</p>
+ *
+ * @author MP
+ */
+public class ContentFingerprints 
+{
+    private static final String SESSION_ATTRIBUTE = ContentFingerprints.class.getName();
+
+    private ContentFingerprints() 
+    {
+    }
+    
+    /**
+     * Stores the fingerprint of the given content, after the content has 
+     * been saved.
+     * 
+     * @param webSess  the web session
+     * @param nodeId  the node that contains the content
+     * @param content  the content that has been saved
+     */
+    public static void capture(WebUserSession webSess, String nodeId, String content) 
+    {
+        Node node = webSess.getOpenedStore().getNodeById(nodeId);
+        if (node != null) {
+            long stamp = node.getModificationStamp();
+            Entry entry = new Entry(ContentFingerprint.create(content, true), stamp);
+            getMap(webSess, true).put(getKey(webSess, nodeId), entry);
+        }
+    }
+    
+    /**
+     * Returns <code>true</code> if the given content is equal to the stored
+     * content of the given node. If a fingerprint has been captured for the 
+     * node, and the node has not been modified since then, then the content
+     * is compared with the fingerprint. Otherwise the content is compared 
+     * with the stored content and, if it is equal, the fingerprint is 
+     * captured for subsequent calls.
+     * Returns <code>false</code>, if the content has changed, or if the 
+     * node is not a {@link PubContent} node.
+     * 
+     * @param webSess  the web session
+     * @param nodeId  the node that contains the content
+     * @param content  the content to be saved
+     * @return  whether saving the content can be skipped
+     */
+    public static boolean isUnchanged(WebUserSession webSess, String nodeId, String content) 
+    {
+        Node node = webSess.getOpenedStore().getNodeById(nodeId);
+        if (! (node instanceof PubContent)) {
+            return false;
+        }
+        // Read the stamp before the content that is guarded by the stamp 
+        long stamp = node.getModificationStamp();
+        String key = getKey(webSess, nodeId);
+        ConcurrentHashMap<String, Entry> map = getMap(webSess, false);
+        Entry entry = (map == null) ? null : map.get(key);
+        if ((entry != null) && (entry.stamp == stamp)) {
+            return entry.fingerprint.matches(content);
+        }
+        String stored = ((PubContent) node).getContentString();
+        if ((content == null) ? (stored != null) : !content.equals(stored)) {
+            return false;
+        }
+        getMap(webSess, true).put(key, new Entry(ContentFingerprint.create(stored, true), stamp));
+        return true;
+    }
+    
+    /**
+     * Removes the fingerprint of the given node, e.g. when the editor is 
+     * closed.
+     * 
+     * @param webSess  the web session
+     * @param nodeId  the node that contains the content
+     */
+    public static void remove(WebUserSession webSess, String nodeId) 
+    {
+        ConcurrentHashMap<String, Entry> map = getMap(webSess, false);
+        if (map != null) {
+            map.remove(getKey(webSess, nodeId));
+        }
+    }
+
+    /* -------------- Private Methods ---------------- */
+
+    private static String getKey(WebUserSession webSess, String nodeId) 
+    {
+        StoreConnection store = webSess.getOpenedStore();
+        String lang = store.getTranslationMode();
+        return store.getStoreId() + "/" + store.getVersionId() + "/" + 
+               ((lang == null) ? "" : lang) + "/" + nodeId;
+    }
+
+    private static ConcurrentHashMap<String, Entry> getMap(WebUserSession webSess, boolean create) 
+    {
+        HttpSession hsess = webSess.getHttpSession();
+        synchronized (hsess) {
+            Object obj = hsess.getAttribute(SESSION_ATTRIBUTE);
+            if ((obj == null) && create) {
+                obj = new ConcurrentHashMap<String, Entry>();
+                hsess.setAttribute(SESSION_ATTRIBUTE, obj);
+            }
+            @SuppressWarnings("unchecked")
+            ConcurrentHashMap<String, Entry> map = (ConcurrentHashMap<String, Entry>) obj;
+            return map;
+        }
+    }
+
+    /* -------------- Inner Classes ---------------- */
+
+    private static class Entry implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+        
+        final ContentFingerprint fingerprint;
+        final long stamp;   // modification stamp of the node
+        
+        Entry(ContentFingerprint fingerprint, long stamp)
+        {
+            this.fingerprint = fingerprint;
+            this.stamp = stamp;
+        }
+    }
+}
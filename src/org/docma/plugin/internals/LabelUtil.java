@@ -13,9 +13,9 @@
  */
 package org.docma.plugin.internals;
 
-import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  *
@@ -23,16 +23,16 @@ import java.util.Map;
  */
 public class LabelUtil 
 {
-    private static LabelProvider labelProvider = null;
+    private static volatile LabelProvider labelProvider = null;
     
-    // The localeCache field maps language codes to locale instances
-    private static final Map<String, Locale> localeCache = new HashMap<String, Locale>(500);
+    // Maximum number of cached locales. Language codes are passed in by 
+    // callers and are not validated; the limit protects against unbounded 
+    // growth on arbitrary values.
+    private static final int MAX_CACHED_LOCALES = 256;
     
-    static {
-        for (Locale loc : Locale.getAvailableLocales()) {
-            localeCache.put(loc.getLanguage(), loc);
-        }
-    }
+    // The localeCache field maps language codes to locale instances.
+    // Entries are created lazily on first use.
+    private static final Map<String, Locale> localeCache = new ConcurrentHashMap<String, Locale>(64);
     
     /**
      * Private constructor to avoid the creation of instances. 
@@ -52,6 +52,19 @@ public class LabelUtil
         labelProvider = provider;
     }
     
+    /**
+     * Has to be called whenever labels are added or removed, for example
+     * when a plug-in is loaded or unloaded. If the current label provider 
+     * compiles the labels, then the compiled labels are discarded.
+     */
+    public static void reloadLabels()
+    {
+        LabelProvider provider = labelProvider;
+        if (provider instanceof CompiledLabelProvider) {
+            ((CompiledLabelProvider) provider).reload();
+        }
+    }
+    
     public static String getLabel(Locale locale, String key, Object[] args) 
     {
         if (labelProvider == null) {
@@ -62,12 +75,25 @@ public class LabelUtil
     }
     
     public static String getLabel(String languageCode, String key, Object[] args) 
+    {
+        return getLabel(getLocale(languageCode), key, args);
+    }
+    
+    /**
+     * Returns the cached locale instance for the given language code.
+     * 
+     * @param languageCode  the ISO 639 language code
+     * @return  the locale
+     */
+    public static Locale getLocale(String languageCode)
     {
         Locale loc = localeCache.get(languageCode);
         if (loc == null) {
             loc = new Locale(languageCode);
-            localeCache.put(languageCode, loc);
+            if (localeCache.size() < MAX_CACHED_LOCALES) {
+                localeCache.put(languageCode, loc);
+            }
         }
-        return getLabel(loc, key, args);
+        return loc;
     }
 }
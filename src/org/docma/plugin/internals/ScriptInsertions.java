@@ -16,9 +16,11 @@ package org.docma.plugin.internals;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import org.docma.plugin.web.WebUserSession;
 
 /**
@@ -28,69 +30,135 @@ import org.docma.plugin.web.WebUserSession;
  * and user settings. The plug-in has to implement the {@link ScriptInsertion}
  * interface.
  *
+ * <p>This class is thread-safe. Modifications are done on a copy of the
+ * registered insertions, which replaces the current copy afterwards. 
+ * Therefore, {@link #getInsertion(WebUserSession, String, String)} does 
+ * not require any locking.</p>
+ *
  * @author MP
  * @see ScriptInsertion
  */
 public class ScriptInsertions
 {
-    // Map feature to list of plugin script insertions
+    private static final Snapshot EMPTY_SNAPSHOT = new Snapshot(new String[0], new ScriptInsertion[0][]);
+    private static final int MAX_CACHE_ENTRIES = 2000;
+
+    // Map feature to list of plugin script insertions (guarded by this)
     private final SortedMap<String, List<ScriptInsertion>> insertions = new TreeMap();
 
+    // Immutable copy of the insertions map, which is replaced on each 
+    // modification (copy-on-write). Read without locking.
+    private volatile Snapshot snapshot = EMPTY_SNAPSHOT;
+
     public ScriptInsertions()
     {
     }
     
     public String getInsertion(WebUserSession userSess, String ext, String posId)
     {
-        if (insertions.isEmpty()) {
+        if (snapshot.features.length == 0) {
             return "";
         }
-        
-        // Map feature to ScriptInsertion
-        SortedMap<String, ScriptInsertion> resultMap = null;
-
-        // Iterate over all features
-        for (String feature : insertions.keySet()) {
-            // If a plugin has inserted a script for the extension ext, then
-            // this script needs to be included in the result. If no script
-            // has been inserted for a feature x and the extension ext, but a 
-            // script has been inserted for the feature x and the wildcard
-            // extension "*", then this script is included in the result too. 
-            // The wildcard extension "*" allows to insert scripts that 
-            // are valid for all extensions.
-            // If more than one plugin inserts a script for the same feature
-            // and extension, then the script of the last loaded plugin is used.
-            List<ScriptInsertion> insList = insertions.get(feature);
-            for (ScriptInsertion ins : insList) {
-                Set<String> exts = ins.getFileExtensions(userSess);
-                if (containsExt(exts, ext) || 
-                    (containsExt(exts, "*") && 
-                     ((resultMap == null) || !resultMap.containsKey(feature)))) {
-                    if (resultMap == null) {
-                        resultMap = new TreeMap();
-                    }
-                    resultMap.put(feature, ins);
-                }
+        String[] result = new String[1];
+        getInsertions(userSess, ext, new String[] { posId }, result);
+        return result[0];
+    }
+    
+    /**
+     * Returns the insertions for several insert positions at once.
+     * The insertions that apply to the given extension are selected only
+     * once for all positions. The result for position <code>posIds[i]</code>
+     * is written to <code>result[i]</code>, and is the same as the value 
+     * returned by {@link #getInsertion(WebUserSession, String, String)}.
+     * 
+     * <p>If all insertions of a feature implement 
+     * {@link CacheableScriptInsertion}, then the text of this feature is 
+     * cached per extension, position and cache key. The cache is 
+     * invalidated whenever insertions are added or removed.</p>
+     * 
+     * @param userSess  the user session
+     * @param ext  the file extension
+     * @param posIds  the insert positions
+     * @param result  array that receives the insertions; the length has to 
+     *                be at least the length of <code>posIds</code>
+     */
+    public void getInsertions(WebUserSession userSess, String ext, String[] posIds, String[] result)
+    {
+        final Snapshot snap = snapshot;
+        final int featureCount = snap.features.length;
+        if (featureCount == 0) {
+            for (int i = 0; i < posIds.length; i++) {
+                result[i] = "";
             }
+            return;
         }
-
-        // No script has been inserted for the given file extension
-        if (resultMap == null) {
-            return "";
+        
+        // Per feature: cache key (null if not cacheable) and selected insertion
+        String[] cacheKeys = new String[featureCount];
+        ScriptInsertion[] selected = new ScriptInsertion[featureCount];
+        boolean[] isSelected = new boolean[featureCount];
+        for (int f = 0; f < featureCount; f++) {
+            if (snap.cacheable[f]) {
+                cacheKeys[f] = getCacheKey(snap.insertions[f], userSess);
+            }
         }
         
-        // Concatenate the scripts of all features
-        StringBuilder sb = new StringBuilder();
-        for (ScriptInsertion ins : resultMap.values()) {
-            if (sb.length() > 0) {
-                sb.append("\n");
+        // One buffer is reused for all positions. It is only needed if the 
+        // texts of more than one feature have to be concatenated.
+        StringBuilder sb = null;
+        for (int i = 0; i < posIds.length; i++) {
+            String res = "";
+            if (sb != null) {
+                sb.setLength(0);
+            }
+            // Iterate over all features (in sorted order)
+            for (int f = 0; f < featureCount; f++) {
+                String fullKey = null;
+                String text = null;
+                if (cacheKeys[f] != null) {
+                    fullKey = f + "\u0000" + ext + "\u0000" + posIds[i] + "\u0000" + cacheKeys[f];
+                    text = snap.cache.get(fullKey);
+                }
+                if (text == null) {
+                    if (! isSelected[f]) {
+                        // If a plugin has inserted a script for the extension ext, then
+                        // this script needs to be included in the result. If no script
+                        // has been inserted for a feature x and the extension ext, but a 
+                        // script has been inserted for the feature x and the wildcard
+                        // extension "*", then this script is included in the result too. 
+                        // The wildcard extension "*" allows to insert scripts that 
+                        // are valid for all extensions.
+                        // If more than one plugin inserts a script for the same feature
+                        // and extension, then the script of the last loaded plugin is used.
+                        selected[f] = selectInsertion(snap.insertions[f], userSess, ext);
+                        isSelected[f] = true;
+                    }
+                    // Note: No selected insertion is equivalent to an empty insertion
+                    ScriptInsertion ins = selected[f];
+                    text = (ins == null) ? "" : String.valueOf(ins.getInsertion(userSess, ext, posIds[i]));
+                    if ((fullKey != null) && (snap.cache.size() < MAX_CACHE_ENTRIES)) {
+                        snap.cache.put(fullKey, text);
+                    }
+                }
+                if (text.length() > 0) {
+                    if (res.length() == 0) {
+                        res = text;
+                    } else {
+                        if (sb == null) {
+                            sb = new StringBuilder(res.length() + text.length() + 64);
+                        }
+                        if (sb.length() == 0) {
+                            sb.append(res);
+                        }
+                        sb.append("\n").append(text);
+                    }
+                }
             }
-            sb.append(ins.getInsertion(userSess, ext, posId));
+            result[i] = ((sb != null) && (sb.length() > 0)) ? sb.toString() : res;
         }
-        return sb.toString();
     }
     
-    public void addInsertion(ScriptInsertion ins)
+    public synchronized void addInsertion(ScriptInsertion ins)
     {
         String feature = ins.getFeature();
         List<ScriptInsertion> insList = insertions.get(feature);
@@ -102,20 +170,82 @@ public class ScriptInsertions
             removeInsertionFromList(ins.getPluginId(), insList);
         }
         insList.add(ins);
+        updateSnapshot();
     }
     
-    public void clearPluginInsertions(String pluginId)
+    public synchronized void clearPluginInsertions(String pluginId)
     {
         // Iterate over all features
-        for (List<ScriptInsertion> insList : insertions.values()) {
+        Iterator<List<ScriptInsertion>> it = insertions.values().iterator();
+        while (it.hasNext()) {
+            List<ScriptInsertion> insList = it.next();
             removeInsertionFromList(pluginId, insList);
+            if (insList.isEmpty()) {
+                it.remove();
+            }
         }
+        updateSnapshot();
     }
     
     /* -------------- Private Methods ---------------- */
 
+    private void updateSnapshot()
+    {
+        int cnt = insertions.size();
+        String[] features = new String[cnt];
+        ScriptInsertion[][] arr = new ScriptInsertion[cnt][];
+        int i = 0;
+        for (String feature : insertions.keySet()) {
+            List<ScriptInsertion> insList = insertions.get(feature);
+            features[i] = feature;
+            arr[i] = insList.toArray(new ScriptInsertion[insList.size()]);
+            i++;
+        }
+        snapshot = new Snapshot(features, arr);
+    }
+
+    /**
+     * Selects the insertion of a feature that applies to the extension ext.
+     * Returns null if no insertion applies.
+     */
+    private ScriptInsertion selectInsertion(ScriptInsertion[] insList, WebUserSession userSess, String ext)
+    {
+        ScriptInsertion selected = null;
+        for (ScriptInsertion ins : insList) {
+            Set<String> exts = ins.getFileExtensions(userSess);
+            if (containsExt(exts, ext) || 
+                ((selected == null) && containsExt(exts, "*"))) {
+                selected = ins;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Returns the combined cache key of all insertions of a feature, or null
+     * if the result for the given session cannot be cached.
+     */
+    private String getCacheKey(ScriptInsertion[] insList, WebUserSession userSess)
+    {
+        if (insList.length == 1) {
+            return ((CacheableScriptInsertion) insList[0]).getCacheKey(userSess);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (ScriptInsertion ins : insList) {
+            String key = ((CacheableScriptInsertion) ins).getCacheKey(userSess);
+            if (key == null) {
+                return null;
+            }
+            sb.append(key).append('\u0001');
+        }
+        return sb.toString();
+    }
+
     private boolean containsExt(Set<String> exts, String ext)
     {
+        if (exts.contains(ext)) {
+            return true;
+        }
         for (String e : exts) {
             if (e.equalsIgnoreCase(ext)) {
                 return true;
@@ -136,4 +266,30 @@ public class ScriptInsertions
         }
     }
 
+    /* -------------- Inner Classes ---------------- */
+
+    private static class Snapshot
+    {
+        final String[] features;              // sorted
+        final ScriptInsertion[][] insertions; // insertions per feature
+        final boolean[] cacheable;            // all insertions of feature are cacheable
+        final Map<String, String> cache = new ConcurrentHashMap<String, String>();
+        
+        Snapshot(String[] features, ScriptInsertion[][] insertions)
+        {
+            this.features = features;
+            this.insertions = insertions;
+            this.cacheable = new boolean[insertions.length];
+            for (int f = 0; f < insertions.length; f++) {
+                boolean all = true;
+                for (ScriptInsertion ins : insertions[f]) {
+                    if (!(ins instanceof CacheableScriptInsertion)) {
+                        all = false;
+                        break;
+                    }
+                }
+                cacheable[f] = all;
+            }
+        }
+    }
 }
@@ -0,0 +1,217 @@
+/*
+ * StyleCSSFragments.java
+ *
+ *  Copyright (C) 2018  Manfred Paula, http://www.docmenta.org
+ *   
+ *  This file is part of Docmenta. Docmenta is free software: you can 
+ *  redistribute it and/or modify it under the terms of the GNU Lesser 
+ *  General Public License as published by the Free Software Foundation, 
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Docmenta.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.docma.plugin.internals;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.docma.plugin.DocmaException;
+import org.docma.plugin.Style;
+
+/**
+ * Assembles the CSS of all styles from cached per-style fragments. 
+ * The CSS class definition of each style (the <em>fragment</em>) is 
+ * generated only once, and is re-generated only if the style is changed.
+ * Furthermore, the assembled style sheets are cached per variant. For each
+ * assembled style sheet it is recorded which style has been used for which
+ * base-identifier. Therefore, if a single style is saved or deleted, then 
+ * only the affected fragment is re-generated and only the style sheets that 
+ * include the style (or that would include the style after the change) are 
+ * re-assembled.
+ * 
+ * <p>The store has to call {@link #styleChanged(Style)} whenever a style 
+ * is saved or deleted, after the {@link StyleIndex} has been updated.</p>
+ *
+ * @author MP
+ * @see StyleIndex
+ */
+public class StyleCSSFragments 
+{
+    private static final char KEY_SEPARATOR = '\u0000';
+    // Key of the sheet that contains all styles. Must differ from any 
+    // variant name, including the empty name of the base styles.
+    private static final String ALL_STYLES_KEY = KEY_SEPARATOR + "all";
+    
+    private final FragmentGenerator generator;
+    
+    // Maps class name + KEY_SEPARATOR + style-id to the CSS fragment
+    private final ConcurrentMap<String, String> fragments = new ConcurrentHashMap<String, String>();
+    
+    // Maps variant name (or ALL_STYLES_KEY) to the assembled style sheet
+    private final ConcurrentMap<String, AssembledCSS> sheets = new ConcurrentHashMap<String, AssembledCSS>();
+    
+    // Incremented by each invalidation; used to discard results that have  
+    // been computed concurrently to an invalidation.
+    private final AtomicLong modCount = new AtomicLong();
+
+    /**
+     * Generates the CSS class definition for a single style.
+     */
+    public interface FragmentGenerator 
+    {
+        /**
+         * Returns the CSS class definition of the given style.
+         * 
+         * @param style  the style
+         * @param className  the CSS class name to be used
+         * @return  the CSS class definition
+         */
+        String generateFragment(Style style, String className) throws DocmaException;
+    }
+
+    public StyleCSSFragments(FragmentGenerator generator) 
+    {
+        this.generator = generator;
+    }
+    
+    /**
+     * Returns the CSS of all styles of the given index, where the style 
+     * identifier is used as CSS class name.
+     * See <code>StoreConnection.getStylesCSS()</code>.
+     * 
+     * @param index  the style index of the store
+     * @return  the CSS class definitions
+     */
+    public String getStylesCSS(StyleIndex index) throws DocmaException
+    {
+        return getSheet(index, null);
+    }
+
+    /**
+     * Returns the CSS of all styles for the given variant name, where the 
+     * base-identifier is used as CSS class name.
+     * See <code>StoreConnection.getStylesCSS(String)</code>.
+     * 
+     * @param index  the style index of the store
+     * @param variantName  the variant name, or <code>null</code>
+     * @return  the CSS class definitions
+     */
+    public String getStylesCSS(StyleIndex index, String variantName) throws DocmaException
+    {
+        return getSheet(index, (variantName == null) ? "" : variantName);
+    }
+    
+    /**
+     * Invalidates the cached fragments and style sheets that depend on 
+     * the given style. Has to be called after a style has been saved,
+     * and after a style has been deleted.
+     * 
+     * @param style  the saved or deleted style
+     */
+    public void styleChanged(Style style) 
+    {
+        modCount.incrementAndGet();
+        String styleId = style.getId();
+        String baseId = style.getBaseId();
+        String variant = style.getVariantName();
+        boolean isBase = (variant == null) || variant.length() == 0;
+        
+        fragments.remove(styleId + KEY_SEPARATOR + styleId);
+        fragments.remove(baseId + KEY_SEPARATOR + styleId);
+        
+        Iterator<Map.Entry<String, AssembledCSS>> it = sheets.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, AssembledCSS> entry = it.next();
+            String sheetVariant = entry.getKey();
+            if (sheetVariant.equals(ALL_STYLES_KEY)) {
+                it.remove();   // includes all styles
+                continue;
+            }
+            boolean sameVariant = isBase ? sheetVariant.equals("") 
+                                         : sheetVariant.equals(variant);
+            String usedId = entry.getValue().usedStyles.get(baseId);
+            if (styleId.equals(usedId)) {
+                it.remove();   // the style itself has been changed or deleted
+            } else if (sameVariant || (isBase && (usedId == null))) {
+                // A new variant-style replaces the base-style, or 
+                // a new base-style is used as fall-back for the variant.
+                it.remove();
+            }
+        }
+    }
+    
+    /**
+     * Removes all cached fragments and style sheets.
+     */
+    public void clear() 
+    {
+        modCount.incrementAndGet();
+        fragments.clear();
+        sheets.clear();
+    }
+
+    /* -------------- Private Methods ---------------- */
+
+    private String getSheet(StyleIndex index, String variantName) throws DocmaException
+    {
+        String key = (variantName == null) ? ALL_STYLES_KEY : variantName;
+        AssembledCSS sheet = sheets.get(key);
+        if (sheet != null) {
+            return sheet.css;
+        }
+        
+        long mod = modCount.get();
+        Style[] styles = (variantName == null) ? index.getAllStyles() 
+                                               : index.getStyles(variantName);
+        Map<String, String> used = new HashMap<String, String>(styles.length * 2);
+        StringBuilder sb = new StringBuilder(styles.length * 100);
+        for (Style s : styles) {
+            String clsName = (variantName == null) ? s.getId() : s.getBaseId();
+            sb.append(getFragment(s, clsName, mod));
+            used.put(s.getBaseId(), s.getId());
+        }
+        sheet = new AssembledCSS(sb.toString(), used);
+        // Put first and check afterwards, because a concurrent change that 
+        // happens after the check removes the entry itself.
+        sheets.put(key, sheet);
+        if (modCount.get() != mod) {
+            sheets.remove(key, sheet);
+        }
+        return sheet.css;
+    }
+    
+    private String getFragment(Style style, String className, long mod) throws DocmaException
+    {
+        String key = className + KEY_SEPARATOR + style.getId();
+        String frag = fragments.get(key);
+        if (frag == null) {
+            frag = generator.generateFragment(style, className);
+            if (frag == null) {
+                frag = "";
+            }
+            fragments.put(key, frag);
+            if (modCount.get() != mod) {
+                fragments.remove(key, frag);
+            }
+        }
+        return frag;
+    }
+    
+    /* -------------- Inner Classes ---------------- */
+    
+    private static class AssembledCSS 
+    {
+        final String css;
+        final Map<String, String> usedStyles;  // maps base-id to style-id
+        
+        AssembledCSS(String css, Map<String, String> usedStyles)
+        {
+            this.css = css;
+            this.usedStyles = usedStyles;
+        }
+    }
+}
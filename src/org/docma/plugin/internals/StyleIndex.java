@@ -0,0 +1,249 @@
+/*
+ * StyleIndex.java
+ *
+ *  Copyright (C) 2018  Manfred Paula, http://www.docmenta.org
+ *   
+ *  This file is part of Docmenta. Docmenta is free software: you can 
+ *  redistribute it and/or modify it under the terms of the GNU Lesser 
+ *  General Public License as published by the Free Software Foundation, 
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with Docmenta.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.docma.plugin.internals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.docma.plugin.Style;
+
+/**
+ * An index of the styles of a store, which allows resolving style variants 
+ * by a single hash lookup. 
+ * The index contains a precomputed resolution table for each variant name,
+ * that maps each base-identifier to the effective style, as defined 
+ * by <code>StoreConnection.getStyleVariant(baseId, variantName)</code>.
+ * Furthermore, the result of <code>StoreConnection.getStyles(variantName)</code>
+ * is precomputed for each existing variant name.
+ * 
+ * <p>The index is immutable from the point of view of the readers. Each
+ * update creates a new internal snapshot, which replaces the previous one
+ * atomically. Therefore, read access does not require synchronization.
+ * The store has to call {@link #updateStyle(Style)} or 
+ * {@link #removeStyle(String)} whenever a style is saved or deleted.</p>
+ *
+ * @author MP
+ */
+public class StyleIndex 
+{
+    private static final Style[] NO_STYLES = new Style[0];
+    private static final char KEY_SEPARATOR = '\u0000';
+    
+    private volatile Snapshot snapshot;
+
+    public StyleIndex(Style[] styles) 
+    {
+        snapshot = new Snapshot(styles);
+    }
+
+    public Style getStyleById(String styleId) 
+    {
+        return snapshot.byId.get(styleId);
+    }
+    
+    public Style[] getStylesById(String... id_values) 
+    {
+        Map<String, Style> byId = snapshot.byId;
+        Style[] res = new Style[id_values.length];
+        for (int i = 0; i < id_values.length; i++) {
+            res[i] = byId.get(id_values[i]);
+        }
+        return res;
+    }
+
+    /**
+     * Returns the style for the given base-identifier and variant name.
+     * See <code>StoreConnection.getStyleVariant(String, String)</code> for 
+     * the resolution rules.
+     * 
+     * @param baseId  the base-identifier
+     * @param variantName  the variant name, or <code>null</code>
+     * @return  the effective style, or <code>null</code>
+     */
+    public Style getStyleVariant(String baseId, String variantName) 
+    {
+        Snapshot snap = snapshot;
+        if ((variantName == null) || variantName.length() == 0) {
+            return snap.baseStyles.get(baseId);
+        }
+        Map<String, Style> table = snap.resolved.get(variantName);
+        // If the variant name does not exist at all, fall back to the base-style.
+        // Otherwise the table already contains the base-style as fall-back.
+        return (table != null) ? table.get(baseId) : snap.baseStyles.get(baseId);
+    }
+    
+    /**
+     * Returns the styles for the given variant name.
+     * See <code>StoreConnection.getStyles(String)</code> for the semantics.
+     * The returned array is sorted by base-identifier. 
+     * The array is shared and must not be modified by the caller.
+     * 
+     * @param variantName  the variant name, or <code>null</code>
+     * @return  the styles for the given variant name
+     */
+    public Style[] getStyles(String variantName) 
+    {
+        Snapshot snap = snapshot;
+        Style[] res = null;
+        if ((variantName != null) && variantName.length() > 0) {
+            res = snap.byVariant.get(variantName);
+        }
+        return (res != null) ? res : snap.baseStyleArr;
+    }
+    
+    /**
+     * Returns all styles sorted by identifier. 
+     * The array is shared and must not be modified by the caller.
+     * 
+     * @return  all styles
+     */
+    public Style[] getAllStyles() 
+    {
+        return snapshot.allStyles;
+    }
+
+    /**
+     * Returns the variant names of all variant-styles, sorted alphabetically.
+     * The array is shared and must not be modified by the caller.
+     * 
+     * @return  the variant names
+     */
+    public String[] getVariantNames() 
+    {
+        return snapshot.variantNames;
+    }
+    
+    /**
+     * Adds the given style to the index, or replaces the indexed style with 
+     * the same identifier.
+     * 
+     * @param style  the saved style
+     */
+    public synchronized void updateStyle(Style style) 
+    {
+        Map<String, Style> styles = new HashMap<String, Style>(snapshot.byId);
+        styles.put(style.getId(), style);
+        snapshot = new Snapshot(styles.values().toArray(NO_STYLES));
+    }
+    
+    /**
+     * Removes the style with the given identifier from the index. 
+     * If no such style is indexed, then this method does nothing.
+     * 
+     * @param styleId  the identifier of the deleted style
+     */
+    public synchronized void removeStyle(String styleId) 
+    {
+        if (snapshot.byId.containsKey(styleId)) {
+            Map<String, Style> styles = new HashMap<String, Style>(snapshot.byId);
+            styles.remove(styleId);
+            snapshot = new Snapshot(styles.values().toArray(NO_STYLES));
+        }
+    }
+    
+    /**
+     * Replaces the complete index content by the given styles.
+     * 
+     * @param styles  all styles of the store
+     */
+    public synchronized void rebuild(Style[] styles) 
+    {
+        snapshot = new Snapshot(styles);
+    }
+
+    /* -------------- Private Methods ---------------- */
+
+    private static String createKey(String baseId, String variantName) 
+    {
+        return baseId + KEY_SEPARATOR + variantName;
+    }
+    
+    private static boolean isBaseStyle(Style style) 
+    {
+        String v = style.getVariantName();
+        return (v == null) || v.length() == 0;
+    }
+    
+    /* -------------- Inner Classes ---------------- */
+    
+    private static class Snapshot 
+    {
+        final Map<String, Style> byId;
+        final Map<String, Style> baseStyles;
+        final Map<String, Map<String, Style>> resolved;
+        final Map<String, Style[]> byVariant;
+        final Style[] allStyles;
+        final Style[] baseStyleArr;
+        final String[] variantNames;
+
+        Snapshot(Style[] styles) 
+        {
+            SortedMap<String, Style> sorted = new TreeMap<String, Style>();
+            SortedMap<String, Style> bases = new TreeMap<String, Style>();
+            SortedSet<String> variants = new TreeSet<String>();
+            for (Style s : styles) {
+                sorted.put(s.getId(), s);
+                if (isBaseStyle(s)) {
+                    bases.put(s.getBaseId(), s);
+                } else {
+                    variants.add(s.getVariantName());
+                }
+            }
+            
+            // Sorted set of all base-identifiers (including base-identifiers 
+            // of variant-styles for which no base-style exists)
+            SortedSet<String> baseIds = new TreeSet<String>(bases.keySet());
+            Map<String, Style> variantStyles = new HashMap<String, Style>();
+            for (Style s : sorted.values()) {
+                if (! isBaseStyle(s)) {
+                    baseIds.add(s.getBaseId());
+                    variantStyles.put(createKey(s.getBaseId(), s.getVariantName()), s);
+                }
+            }
+            
+            // Build the resolution table and the per-variant style lists
+            Map<String, Map<String, Style>> tables = new HashMap<String, Map<String, Style>>(variants.size() * 2);
+            Map<String, Style[]> varLists = new HashMap<String, Style[]>(variants.size() * 2);
+            for (String variant : variants) {
+                Map<String, Style> table = new HashMap<String, Style>(baseIds.size() * 2);
+                List<Style> list = new ArrayList<Style>(baseIds.size());
+                for (String baseId : baseIds) {
+                    Style s = variantStyles.get(createKey(baseId, variant));
+                    if (s == null) {
+                        s = bases.get(baseId);
+                    }
+                    if (s != null) {
+                        table.put(baseId, s);
+                        list.add(s);
+                    }
+                }
+                tables.put(variant, table);
+                varLists.put(variant, list.toArray(NO_STYLES));
+            }
+            
+            byId = new HashMap<String, Style>(sorted);
+            baseStyles = new HashMap<String, Style>(bases);
+            resolved = tables;
+            byVariant = varLists;
+            allStyles = sorted.values().toArray(NO_STYLES);
+            baseStyleArr = bases.values().toArray(NO_STYLES);
+            variantNames = variants.toArray(new String[variants.size()]);
+        }
+    }
+}
@@ -36,6 +36,25 @@ public class TextFileHandler extends DefaultContentAppHandler
     
     private static final ScriptInsertions insertions = new ScriptInsertions();
 
+    /**
+     * Returns the insertions for several template positions in a single 
+     * pass. This should be used instead of calling the individual getter 
+     * methods when rendering a complete editor page. The result for 
+     * position <code>posIds[i]</code> is written to <code>result[i]</code>. 
+     * Callers can reuse the <code>posIds</code> and <code>result</code> 
+     * arrays for all pages they render.
+     * 
+     * @param userSess  the user session
+     * @param ext  the file extension
+     * @param posIds  the insert positions (<code>INSERT_*</code> constants)
+     * @param result  array that receives the insertion texts; the length 
+     *                has to be at least the length of <code>posIds</code>
+     */
+    public static void getInsertions(WebUserSession userSess, String ext, String[] posIds, String[] result)
+    {
+        insertions.getInsertions(userSess, ext, posIds, result);
+    }
+
     public static String getHTMLMeta(WebUserSession userSess, String ext)
     {
         return insertions.getInsertion(userSess, ext, INSERT_HTML_META);
@@ -14,6 +14,7 @@
 package org.docma.plugin.web;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.Properties;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -108,8 +109,17 @@ public class DefaultContentAppHandler implements ContentAppHandler, WindowSizeSt
     private int win_default_height;
     private String js_open_command;
     private boolean set_edit_lock;
+    /**
+     * The file extensions that can be edited/viewed by this content 
+     * application. The sets assigned by the 
+     * {@link #initialize(java.io.File, java.lang.String, java.util.Properties)}
+     * method are unmodifiable. To change the supported extensions, 
+     * subclasses have to assign a new set.
+     */
     protected SortedSet<String> extensionsEdit;
     protected SortedSet<String> extensionsView;
+    private volatile ExtensionsSnapshot editSnapshot = null;
+    private volatile ExtensionsSnapshot viewSnapshot = null;
 
     public DefaultContentAppHandler() 
     {
@@ -158,8 +168,8 @@ public class DefaultContentAppHandler implements ContentAppHandler, WindowSizeSt
         js_open_command = props.getProperty(PROP_JS_OPEN_COMMAND, "");
         set_edit_lock = props.getProperty(PROP_SET_EDIT_LOCK, "").equalsIgnoreCase("true");
         
-        extensionsEdit = extensionsFromString(props.getProperty(PROP_EXTENSIONS_EDIT));
-        extensionsView = extensionsFromString(props.getProperty(PROP_EXTENSIONS_VIEW));
+        extensionsEdit = Collections.unmodifiableSortedSet(extensionsFromString(props.getProperty(PROP_EXTENSIONS_EDIT)));
+        extensionsView = Collections.unmodifiableSortedSet(extensionsFromString(props.getProperty(PROP_EXTENSIONS_VIEW)));
     }
 
     private String getURLFromProps(String propName) 
@@ -186,14 +196,38 @@ public class DefaultContentAppHandler implements ContentAppHandler, WindowSizeSt
         return PluginUtil.getLabel(languageCode, label_key, null);
     }
 
+    /**
+     * Returns the file extensions that can be edited by this content 
+     * application. The returned array is shared and must not be modified.
+     * 
+     * @return  the supported extensions in lower case
+     */
     public String[] getSupportedEditExtensions() 
     {
-        return extensionsEdit.toArray(new String[extensionsEdit.size()]);
+        ExtensionsSnapshot snap = editSnapshot;
+        SortedSet<String> exts = extensionsEdit;
+        if ((snap == null) || (snap.source != exts)) {  // a new set has been assigned
+            snap = new ExtensionsSnapshot(exts);
+            editSnapshot = snap;
+        }
+        return snap.extensions;
     }
 
+    /**
+     * Returns the file extensions that can be viewed by this content 
+     * application. The returned array is shared and must not be modified.
+     * 
+     * @return  the supported extensions in lower case
+     */
     public String[] getSupportedViewExtensions() 
     {
-        return extensionsView.toArray(new String[extensionsView.size()]);
+        ExtensionsSnapshot snap = viewSnapshot;
+        SortedSet<String> exts = extensionsView;
+        if ((snap == null) || (snap.source != exts)) {  // a new set has been assigned
+            snap = new ExtensionsSnapshot(exts);
+            viewSnapshot = snap;
+        }
+        return snap.extensions;
     }
 
     public String getPreviewURL(WebUserSession webSess, String nodeId) 
@@ -472,4 +506,18 @@ public class DefaultContentAppHandler implements ContentAppHandler, WindowSizeSt
         return ext.toLowerCase();
     }
 
+    /* --------------  Inner Classes ---------------------- */
+
+    private static class ExtensionsSnapshot
+    {
+        final SortedSet<String> source;
+        final String[] extensions;
+        
+        ExtensionsSnapshot(SortedSet<String> source)
+        {
+            this.source = source;
+            this.extensions = source.toArray(new String[source.size()]);
+        }
+    }
+
 }